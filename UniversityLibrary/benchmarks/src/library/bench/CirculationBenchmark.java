@@ -0,0 +1,175 @@
+package library.bench;
+
+import library.UniversityLibrary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UniversityLibrary#borrowItem} and {@link UniversityLibrary#returnItem}.
+ * Every operation borrows an item and returns it right away, so the catalog stays in the same state however
+ * long the benchmark runs. The multi-threaded variants use a library in concurrent mode, with each thread
+ * working on its own members and items.
+ * 
+ * @author mianm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CirculationBenchmark {
+
+    /**
+     * The library shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int itemCount;
+
+        @Param({"1000", "60000", "1000000"})
+        public int memberCount;
+
+        UniversityLibrary library;
+        UniversityLibrary concurrentLibrary;
+        String[] itemIds;
+        String[] memberIds;
+
+        /**
+         * Builds the libraries and the ID tables once per trial.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            library = LibraryFixture.library(itemCount, memberCount, false);
+            concurrentLibrary = LibraryFixture.library(itemCount, memberCount, true);
+            itemIds = new String[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                itemIds[i] = LibraryFixture.itemId(i);
+            }
+            memberIds = new String[memberCount];
+            for (int i = 0; i < memberCount; i++) {
+                memberIds[i] = LibraryFixture.memberId(i);
+            }
+        }
+    }
+
+    /**
+     * The position of one benchmark thread in the member and item sequences.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextThread;
+
+        int member;
+        int item;
+        int stride;
+
+        /**
+         * Starts each thread at a different member and item.
+         *
+         * @param catalog The shared library.
+         */
+        @Setup(Level.Trial)
+        public void setUp(Catalog catalog) {
+            int thread;
+            synchronized (Cursor.class) {
+                thread = nextThread++;
+            }
+            stride = 7919;
+            member = (thread * 104729) % catalog.memberCount;
+            item = (thread * 15485863) % catalog.itemCount;
+        }
+
+        /**
+         * Moves to the next member and item.
+         *
+         * @param catalog The shared library.
+         */
+        void advance(Catalog catalog) {
+            member = (member + 1) % catalog.memberCount;
+            item = (item + stride) % catalog.itemCount;
+        }
+    }
+
+    /**
+     * Borrows and returns an item on a single-threaded library.
+     *
+     * @param catalog The shared library.
+     * @param cursor  The position of this thread.
+     * @return Whether the borrow succeeded.
+     */
+    @Benchmark
+    public boolean borrowAndReturn(Catalog catalog, Cursor cursor) {
+        cursor.advance(catalog);
+        return cycle(catalog, catalog.library, cursor);
+    }
+
+    /**
+     * Borrows and returns an item on a concurrent library from one thread, showing the cost of the locks.
+     *
+     * @param catalog The shared library.
+     * @param cursor  The position of this thread.
+     * @return Whether the borrow succeeded.
+     */
+    @Benchmark
+    public boolean borrowAndReturnConcurrentMode(Catalog catalog, Cursor cursor) {
+        cursor.advance(catalog);
+        return cycle(catalog, catalog.concurrentLibrary, cursor);
+    }
+
+    /**
+     * Borrows and returns items on a concurrent library from as many threads as there are processors.
+     *
+     * @param catalog The shared library.
+     * @param cursor  The position of this thread.
+     * @return Whether the borrow succeeded.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean borrowAndReturnMultiThreaded(Catalog catalog, Cursor cursor) {
+        cursor.advance(catalog);
+        return cycle(catalog, catalog.concurrentLibrary, cursor);
+    }
+
+    /**
+     * Returns an item the member does not hold, which exercises the lookups and the return path only.
+     *
+     * @param catalog The shared library.
+     * @param cursor  The position of this thread.
+     * @return The number of transactions, so the call is not optimised away.
+     */
+    @Benchmark
+    public int returnItemNotHeld(Catalog catalog, Cursor cursor) {
+        cursor.advance(catalog);
+        catalog.library.returnItem(catalog.memberIds[cursor.member], catalog.itemIds[cursor.item], false);
+        return catalog.library.getActiveTransactions().size();
+    }
+
+    /**
+     * Borrows an item and returns it again.
+     *
+     * @param catalog The shared ID tables.
+     * @param library The library to use.
+     * @param cursor  The position of this thread.
+     * @return Whether the borrow succeeded.
+     */
+    private static boolean cycle(Catalog catalog, UniversityLibrary library, Cursor cursor) {
+        String memberId = catalog.memberIds[cursor.member];
+        String itemId = catalog.itemIds[cursor.item];
+        boolean borrowed = library.borrowItem(memberId, itemId);
+        library.returnItem(memberId, itemId, false);
+        return borrowed;
+    }
+}
@@ -0,0 +1,147 @@
+package library.bench;
+
+import library.UniversityLibrary;
+import library.items.Book;
+import library.items.Item;
+import library.members.Faculty;
+import library.members.Student;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Builds synthetic libraries and data files of a given size for the benchmarks.
+ * All data is generated from a fixed seed, so every run measures the same catalog.
+ * 
+ * @author mianm
+ */
+final class LibraryFixture {
+    private static final String[] WORDS = {
+        "clean", "code", "design", "patterns", "pragmatic", "programmer", "refactoring", "software",
+        "engineering", "algorithms", "data", "structures", "systems", "distributed", "compilers", "networks",
+        "operating", "theory", "learning", "machine", "database", "concurrency", "practice", "introduction"
+    };
+    private static final String[] AUTHORS = {
+        "Robert Martin", "Andrew Hunt", "Erich Gamma", "Martin Fowler", "Donald Knuth", "Barbara Liskov",
+        "Leslie Lamport", "Edsger Dijkstra", "Grace Hopper", "Niklaus Wirth", "Tony Hoare", "Ada Lovelace"
+    };
+    private static final String[] TOPICS = {
+        "Software Engineering", "Computer Science", "Mathematics", "Physics", "Economics", "History"
+    };
+
+    private LibraryFixture() {
+    }
+
+    /**
+     * Builds a library with the given number of items and members.
+     *
+     * @param itemCount   The number of items.
+     * @param memberCount The number of members.
+     * @param concurrent  True to build the library in concurrent mode.
+     * @return The library.
+     */
+    static UniversityLibrary library(int itemCount, int memberCount, boolean concurrent) {
+        Random random = new Random(42);
+        UniversityLibrary library = new UniversityLibrary(concurrent);
+        for (int i = 0; i < itemCount; i++) {
+            Item item = new Book(itemId(i), title(random, i), AUTHORS[random.nextInt(AUTHORS.length)],
+                    100 + random.nextInt(900), TOPICS[random.nextInt(TOPICS.length)], 1 + random.nextInt(4));
+            if (i % 10 == 0) {
+                item.createDigVersion();
+            }
+            library.addItem(item);
+        }
+        for (int i = 0; i < memberCount; i++) {
+            if (i % 5 == 0) {
+                library.registerMember(new Faculty(memberId(i), "Faculty " + i, "f" + i + "@uni.edu"));
+            } else {
+                library.registerMember(new Student(memberId(i), "Student " + i, "s" + i + "@uni.edu"));
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Writes an items file and a members file in the text format read by the loaders.
+     *
+     * @param dir         The directory to write to.
+     * @param itemCount   The number of item lines.
+     * @param memberCount The number of member lines.
+     * @throws IOException If a file cannot be written.
+     */
+    static void writeDataFiles(Path dir, int itemCount, int memberCount) throws IOException {
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(itemsFile(dir), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < itemCount; i++) {
+                out.println(itemId(i) + " " + title(random, i).replace(' ', '_') + " "
+                        + AUTHORS[random.nextInt(AUTHORS.length)].replace(' ', '_') + " " + (100 + random.nextInt(900))
+                        + " " + TOPICS[random.nextInt(TOPICS.length)].replace(' ', '_') + " Book " + (1 + random.nextInt(4)));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(membersFile(dir), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < memberCount; i++) {
+                out.println(memberId(i) + " Member_" + i + " m" + i + "@uni.edu " + (i % 5 == 0 ? "Faculty" : "Student"));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the path of the generated items file.
+     *
+     * @param dir The directory the files were written to.
+     * @return The items file.
+     */
+    static Path itemsFile(Path dir) {
+        return dir.resolve("items.txt");
+    }
+
+    /**
+     * Retrieves the path of the generated members file.
+     *
+     * @param dir The directory the files were written to.
+     * @return The members file.
+     */
+    static Path membersFile(Path dir) {
+        return dir.resolve("members.txt");
+    }
+
+    /**
+     * Builds the ID of the item with the given index.
+     *
+     * @param index The index of the item.
+     * @return The item ID.
+     */
+    static String itemId(int index) {
+        return "I" + index;
+    }
+
+    /**
+     * Builds the ID of the member with the given index.
+     *
+     * @param index The index of the member.
+     * @return The member ID.
+     */
+    static String memberId(int index) {
+        return "M" + index;
+    }
+
+    /**
+     * Builds a title of three to five catalog words.
+     *
+     * @param random The generator.
+     * @param index  The index of the item, appended to keep titles distinct.
+     * @return The title.
+     */
+    private static String title(Random random, int index) {
+        StringBuilder title = new StringBuilder();
+        int words = 3 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length()).append(' ');
+        }
+        return title.append(index).toString();
+    }
+}
@@ -0,0 +1,123 @@
+package library.bench;
+
+import library.CatalogLoader;
+import library.UniversityLibrary;
+import library.UniversityLibraryMain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures loading generated data files with the sequential loaders of {@link UniversityLibraryMain} and with
+ * the parallel {@link CatalogLoader}, on one thread and on every processor.
+ * 
+ * @author mianm
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int itemCount;
+
+    @Param({"1000", "60000", "1000000"})
+    public int memberCount;
+
+    private Path dir;
+    private ForkJoinPool singleThread;
+
+    /**
+     * Writes the data files once per trial.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("library-bench");
+        LibraryFixture.writeDataFiles(dir, itemCount, memberCount);
+        singleThread = new ForkJoinPool(1);
+    }
+
+    /**
+     * Deletes the data files.
+     *
+     * @throws IOException If the files cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        singleThread.shutdown();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /**
+     * Loads both files with the sequential text loaders.
+     *
+     * @return The loaded library.
+     */
+    @Benchmark
+    public UniversityLibrary sequentialLoaders() {
+        UniversityLibrary library = new UniversityLibrary();
+        UniversityLibraryMain.loadItemsFromFile(LibraryFixture.itemsFile(dir).toString(), library);
+        UniversityLibraryMain.loadMembersFromFile(LibraryFixture.membersFile(dir).toString(), library);
+        return library;
+    }
+
+    /**
+     * Loads both files with the chunked loader on a single worker.
+     *
+     * @return The loaded library.
+     * @throws IOException If a file cannot be read.
+     */
+    @Benchmark
+    public UniversityLibrary catalogLoaderSingleThreaded() throws IOException {
+        return load(new CatalogLoader(singleThread));
+    }
+
+    /**
+     * Loads both files with the chunked loader on the common pool.
+     *
+     * @return The loaded library.
+     * @throws IOException If a file cannot be read.
+     */
+    @Benchmark
+    public UniversityLibrary catalogLoaderMultiThreaded() throws IOException {
+        return load(new CatalogLoader());
+    }
+
+    /**
+     * Loads both data files with the given loader.
+     *
+     * @param loader The loader.
+     * @return The loaded library.
+     * @throws IOException If a file cannot be read.
+     */
+    private UniversityLibrary load(CatalogLoader loader) throws IOException {
+        UniversityLibrary library = new UniversityLibrary();
+        loader.loadItems(LibraryFixture.itemsFile(dir), library);
+        loader.loadMembers(LibraryFixture.membersFile(dir), library);
+        return library;
+    }
+}
@@ -0,0 +1,102 @@
+package library.bench;
+
+import library.UniversityLibrary;
+import library.items.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dashboard queries {@link UniversityLibrary#getMostPopularItems} and
+ * {@link UniversityLibrary#getMostViewedDigitalItem} on a catalog with some borrow and view history.
+ * 
+ * @author mianm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int itemCount;
+
+    @Param({"1000", "60000"})
+    public int memberCount;
+
+    private UniversityLibrary library;
+
+    /**
+     * Builds the library and spreads borrows and digital views over it.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryFixture.library(itemCount, memberCount, true);
+        Random random = new Random(7);
+        List<Item> items = library.getItems();
+        for (int i = 0; i < Math.min(itemCount, 50000); i++) {
+            Item item = items.get(random.nextInt(itemCount));
+            item.setBorrowCount(item.getBorrowCount() + 1 + random.nextInt(20));
+            if (item.getDigitalVersion() != null) {
+                item.getDigitalVersion().viewDigital();
+            }
+        }
+    }
+
+    /**
+     * Reads the five most borrowed items.
+     *
+     * @return The items.
+     */
+    @Benchmark
+    public List<Item> getMostPopularItems() {
+        return library.getMostPopularItems();
+    }
+
+    /**
+     * Reads the five most borrowed items from as many threads as there are processors.
+     *
+     * @return The items.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<Item> getMostPopularItemsMultiThreaded() {
+        return library.getMostPopularItems();
+    }
+
+    /**
+     * Reads the most viewed digital item.
+     *
+     * @return The item.
+     */
+    @Benchmark
+    public Item getMostViewedDigitalItem() {
+        return library.getMostViewedDigitalItem();
+    }
+
+    /**
+     * Reads the most viewed digital item from as many threads as there are processors.
+     *
+     * @return The item.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Item getMostViewedDigitalItemMultiThreaded() {
+        return library.getMostViewedDigitalItem();
+    }
+}
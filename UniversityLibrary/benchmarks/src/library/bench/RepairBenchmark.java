@@ -0,0 +1,87 @@
+package library.bench;
+
+import library.UniversityLibrary;
+import library.items.Copy;
+import library.items.Item;
+import library.members.RepairSection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RepairSection#periodicRepair()} over an archive in which a share of the items have damaged
+ * copies. The damage is restored before every invocation, so each call has the same amount of work to do.
+ * 
+ * @author mianm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepairBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int itemCount;
+
+    @Param({"1000"})
+    public int memberCount;
+
+    @Param({"0.01", "0.1"})
+    public double archivedShare;
+
+    private UniversityLibrary library;
+    private List<Item> archived;
+    private List<Copy> damagedCopies;
+
+    /**
+     * Builds the library and archives a share of its items.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryFixture.library(itemCount, memberCount, false);
+        damagedCopies = new ArrayList<>();
+        archived = new ArrayList<>();
+        List<Item> items = library.getItems();
+        int step = Math.max(1, (int) Math.round(1 / archivedShare));
+        for (int i = 0; i < items.size(); i += step) {
+            archived.add(items.get(i));
+            damagedCopies.add(items.get(i).getCopies().get(0));
+        }
+    }
+
+    /**
+     * Restores the archive and damages the first copy of every archived item again.
+     */
+    @Setup(Level.Invocation)
+    public void damage() {
+        library.getRepairSection().restoreState(0, archived);
+        for (Copy c : damagedCopies) {
+            c.setDamaged(true);
+        }
+    }
+
+    /**
+     * Runs one periodic repair pass.
+     *
+     * @return The number of repairs performed so far.
+     */
+    @Benchmark
+    public int periodicRepair() {
+        library.checkAndRepairDamagedItems();
+        return library.getRepairSection().getRepairCount();
+    }
+}
@@ -0,0 +1,98 @@
+package library.bench;
+
+import library.UniversityLibrary;
+import library.items.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UniversityLibrary#searchByTitle} and {@link UniversityLibrary#searchByAuthor} with queries
+ * from one character, which match most of the catalog, up to selective multi-word queries.
+ * 
+ * @author mianm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int itemCount;
+
+    @Param({"1000"})
+    public int memberCount;
+
+    @Param({"a", "code", "design patterns", "zzz"})
+    public String titleQuery;
+
+    @Param({"fowler"})
+    public String authorQuery;
+
+    private UniversityLibrary library;
+
+    /**
+     * Builds the concurrent library once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryFixture.library(itemCount, memberCount, true);
+    }
+
+    /**
+     * Searches by title from one thread.
+     *
+     * @return The matching items.
+     */
+    @Benchmark
+    public List<Item> searchByTitle() {
+        return library.searchByTitle(titleQuery);
+    }
+
+    /**
+     * Searches by title from as many threads as there are processors.
+     *
+     * @return The matching items.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<Item> searchByTitleMultiThreaded() {
+        return library.searchByTitle(titleQuery);
+    }
+
+    /**
+     * Searches by author from one thread.
+     *
+     * @return The matching items.
+     */
+    @Benchmark
+    public List<Item> searchByAuthor() {
+        return library.searchByAuthor(authorQuery);
+    }
+
+    /**
+     * Searches by author from as many threads as there are processors.
+     *
+     * @return The matching items.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<Item> searchByAuthorMultiThreaded() {
+        return library.searchByAuthor(authorQuery);
+    }
+}
@@ -0,0 +1,452 @@
+package library;
+
+import library.items.Item;
+import library.util.IntList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Completes prefixes of one text field of the catalog, such as titles or authors, with the most borrowed items.
+ *
+ * <p>The field is normalized to lower-case letters and digits separated by single spaces, and every suffix that
+ * starts at a word is inserted into a character trie, so "cod" completes "Clean Code" as well as "Code
+ * Complete". Keys are cut off after {@value #MAX_KEY_LENGTH} characters, which is longer than anyone types into
+ * a search box and keeps the trie small.</p>
+ *
+ * <p>Only the nodes where the completions can differ from those of the node below keep a top list of items by
+ * borrow count: the root, every node with more than one child and every node where a key ends. A node on an
+ * unbranched chain answers with the list of the first listed node below it, so the long single-child tails
+ * that most keys end in cost a label and a child reference per character. A completion costs the length of the
+ * prefix, at most {@value #MAX_KEY_LENGTH} steps down a chain and the number of results, no matter how many
+ * items share the prefix. Ties in borrow count go to the item added first.</p>
+ *
+ * <p>Items are added incrementally, and the top lists along the item's paths are adjusted from the bottom up
+ * when its borrow count changes. Every node keeps the borrow counts of the items whose keys end there, so a
+ * list an item dropped out of is refilled from those and from the lists of the nodes directly below, without
+ * looking up any item. Every node is guarded by its own monitor and is only locked before the nodes below it,
+ * so completions and updates for different items run in parallel.</p>
+ *
+ * @author mianm
+ */
+public class AutocompleteIndex {
+    /** The number of characters of a key that are indexed. */
+    public static final int MAX_KEY_LENGTH = 32;
+
+    private static final int DEFAULT_TOP = 10;
+
+    private final Function<Item, String> field;
+    private final int topSize;
+    private final Node root;
+
+    /**
+     * Initializes a new, empty instance of the AutocompleteIndex class that keeps the top 10 items per prefix.
+     *
+     * @param field Extracts the indexed text from an item.
+     */
+    public AutocompleteIndex(Function<Item, String> field) {
+        this(field, DEFAULT_TOP);
+    }
+
+    /**
+     * Initializes a new, empty instance of the AutocompleteIndex class.
+     *
+     * @param field   Extracts the indexed text from an item.
+     * @param topSize The number of items kept per prefix, which is the most a completion returns.
+     */
+    public AutocompleteIndex(Function<Item, String> field, int topSize) {
+        this.field = field;
+        this.topSize = topSize;
+        this.root = new Node();
+        root.list(topSize);
+    }
+
+    /**
+     * Adds a catalogued item under every word of its field.
+     *
+     * @param item The item, with its ordinal already set.
+     */
+    public void add(Item item) {
+        int ordinal = item.getOrdinal();
+        int count = item.getBorrowCount();
+        for (String key : keys(item)) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                synchronized (node) {
+                    node = node.childOrCreate(key.charAt(i), topSize);
+                }
+                path.add(node);
+            }
+            synchronized (node) {
+                node.addTerminal(ordinal, count, topSize);
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node step = path.get(i);
+                synchronized (step) {
+                    if (step.isListed()) {
+                        step.offer(ordinal, count);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an item within the top lists along its paths after its borrow count changed.
+     * The paths are updated from the bottom up, so a list that is refilled from the nodes below it already sees
+     * the new borrow count.
+     *
+     * @param item          The item whose borrow count changed.
+     * @param previousCount The borrow count before the change.
+     */
+    public void borrowCountChanged(Item item, int previousCount) {
+        int ordinal = item.getOrdinal();
+        int count = item.getBorrowCount();
+        for (String key : keys(item)) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                path.add(node);
+                Node next;
+                synchronized (node) {
+                    next = i < key.length() ? node.child(key.charAt(i)) : null;
+                }
+                node = next;
+            }
+            if (path.size() != key.length() + 1) {
+                continue;
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node step = path.get(i);
+                synchronized (step) {
+                    if (i == key.length()) {
+                        step.updateTerminal(ordinal, count);
+                    }
+                    if (!step.isListed()) {
+                        continue;
+                    }
+                    if (count >= previousCount) {
+                        step.offer(ordinal, count);
+                    } else if (step.remove(ordinal)) {
+                        step.refill();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the most borrowed items whose field has a word starting with the prefix.
+     *
+     * @param prefix The typed text; case, punctuation and repeated spaces are ignored.
+     * @param limit  The maximum number of items to return; at most the top size of the index.
+     * @return The ordinals of the items, most borrowed first.
+     */
+    public IntList complete(String prefix, int limit) {
+        String key = normalize(prefix, true);
+        Node node = root;
+        for (int i = 0; i < Math.min(key.length(), MAX_KEY_LENGTH) && node != null; i++) {
+            synchronized (node) {
+                node = node.child(key.charAt(i));
+            }
+        }
+        Node listed = Node.listedFrom(node);
+        IntList result = new IntList();
+        if (listed != null) {
+            synchronized (listed) {
+                for (int i = 0; i < Math.min(limit, listed.size); i++) {
+                    result.add(listed.top[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes text for indexing or lookup: letters and digits are lower-cased and every run of other
+     * characters becomes a single space.
+     *
+     * @param text          The text.
+     * @param keepTrailing  True to keep a space at the end if the text ends with a separator, as a typed
+     *                      prefix does when the user has finished a word.
+     * @return The normalized text.
+     */
+    static String normalize(String text, boolean keepTrailing) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                pendingSpace = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        if (keepTrailing && pendingSpace && normalized.length() > 0) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Builds the keys of an item: every suffix of its normalized field that starts at a word, cut to the
+     * maximum key length.
+     *
+     * @param item The item.
+     * @return The keys.
+     */
+    private List<String> keys(Item item) {
+        String text = normalize(field.apply(item), false);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            if (i == 0 || text.charAt(i - 1) == ' ') {
+                keys.add(text.substring(i, Math.min(text.length(), i + MAX_KEY_LENGTH)));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * One character of the trie. Listed nodes hold the top items of their prefix.
+     */
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] labels;
+        private Node[] children;
+        private int[] top;
+        private int[] counts;
+        private int size;
+        private IntList terminals;
+        private IntList terminalCounts;
+
+        /**
+         * Initializes a new instance of the Node class, without a top list.
+         */
+        Node() {
+            this.labels = NO_LABELS;
+            this.children = NO_CHILDREN;
+        }
+
+        /**
+         * Finds the first node at or below a node that keeps a top list, following single children.
+         * Each node is locked on its own while it is looked at.
+         *
+         * @param node The node to start from, or null.
+         * @return The listed node, or null if the chain ends without one.
+         */
+        static Node listedFrom(Node node) {
+            while (node != null) {
+                Node next;
+                synchronized (node) {
+                    if (node.top != null) {
+                        return node;
+                    }
+                    next = node.children.length == 1 ? node.children[0] : null;
+                }
+                node = next;
+            }
+            return null;
+        }
+
+        /**
+         * Checks whether the node keeps a top list.
+         *
+         * @return True if the node is listed.
+         */
+        boolean isListed() {
+            return top != null;
+        }
+
+        /**
+         * Gives the node a top list and fills it from the nodes below.
+         *
+         * @param topSize The number of items kept.
+         */
+        void list(int topSize) {
+            top = new int[topSize];
+            counts = new int[topSize];
+            refill();
+        }
+
+        /**
+         * Finds the child for a character.
+         *
+         * @param c The character.
+         * @return The child, or null if there is none.
+         */
+        Node child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Finds the child for a character, adding it if there is none.
+         * A node that gets its second child becomes a branch and starts keeping a top list.
+         *
+         * @param c       The character.
+         * @param topSize The number of items kept by a listed node.
+         * @return The child.
+         */
+        Node childOrCreate(char c, int topSize) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (children.length == 1 && !isListed()) {
+                list(topSize);
+            }
+            int insert = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newLabels[insert] = c;
+            newChildren[insert] = new Node();
+            System.arraycopy(labels, insert, newLabels, insert + 1, labels.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insert];
+        }
+
+        /**
+         * Records that a key of an item ends at this node, which then keeps a top list.
+         *
+         * @param ordinal The ordinal of the item.
+         * @param count   The borrow count of the item.
+         * @param topSize The number of items kept.
+         */
+        void addTerminal(int ordinal, int count, int topSize) {
+            if (terminals == null) {
+                terminals = new IntList(1);
+                terminalCounts = new IntList(1);
+            }
+            terminals.add(ordinal);
+            terminalCounts.add(count);
+            if (!isListed()) {
+                list(topSize);
+            }
+        }
+
+        /**
+         * Updates the borrow count kept for an item whose key ends at this node.
+         *
+         * @param ordinal The ordinal of the item.
+         * @param count   The new borrow count.
+         */
+        void updateTerminal(int ordinal, int count) {
+            for (int i = 0; terminals != null && i < terminals.size(); i++) {
+                if (terminals.get(i) == ordinal) {
+                    terminalCounts.set(i, count);
+                }
+            }
+        }
+
+        /**
+         * Rebuilds the top list from the items whose keys end here and the lists of the nodes directly below.
+         * The nodes below are locked one at a time while this node is held.
+         */
+        void refill() {
+            size = 0;
+            for (int i = 0; terminals != null && i < terminals.size(); i++) {
+                offer(terminals.get(i), terminalCounts.get(i));
+            }
+            for (Node child : children) {
+                Node listed = listedFrom(child);
+                if (listed == null) {
+                    continue;
+                }
+                synchronized (listed) {
+                    for (int i = 0; i < listed.size; i++) {
+                        offer(listed.top[i], listed.counts[i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Puts an item at its place in the top list if it belongs there, or moves it if it is already listed.
+         *
+         * @param ordinal The ordinal of the item.
+         * @param count   The borrow count of the item.
+         */
+        void offer(int ordinal, int count) {
+            int position = indexOf(ordinal);
+            if (position < 0) {
+                if (size == top.length && !ranksBefore(count, ordinal, counts[size - 1], top[size - 1])) {
+                    return;
+                }
+                position = size < top.length ? size++ : size - 1;
+            }
+            while (position > 0 && ranksBefore(count, ordinal, counts[position - 1], top[position - 1])) {
+                top[position] = top[position - 1];
+                counts[position] = counts[position - 1];
+                position--;
+            }
+            while (position < size - 1 && ranksBefore(counts[position + 1], top[position + 1], count, ordinal)) {
+                top[position] = top[position + 1];
+                counts[position] = counts[position + 1];
+                position++;
+            }
+            top[position] = ordinal;
+            counts[position] = count;
+        }
+
+        /**
+         * Removes an item from the top list.
+         *
+         * @param ordinal The ordinal of the item.
+         * @return True if the item was listed.
+         */
+        boolean remove(int ordinal) {
+            int position = indexOf(ordinal);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(top, position + 1, top, position, size - position - 1);
+            System.arraycopy(counts, position + 1, counts, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Finds an item in the top list.
+         *
+         * @param ordinal The ordinal of the item.
+         * @return The position of the item, or -1 if it is not listed.
+         */
+        private int indexOf(int ordinal) {
+            for (int i = 0; i < size; i++) {
+                if (top[i] == ordinal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Compares two items by borrow count, then by ordinal.
+         *
+         * @param count        The borrow count of the first item.
+         * @param ordinal      The ordinal of the first item.
+         * @param otherCount   The borrow count of the second item.
+         * @param otherOrdinal The ordinal of the second item.
+         * @return True if the first item ranks before the second.
+         */
+        private static boolean ranksBefore(int count, int ordinal, int otherCount, int otherOrdinal) {
+            return count > otherCount || (count == otherCount && ordinal < otherOrdinal);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package library;
+
+import library.items.Book;
+import library.items.Item;
+import library.items.ResearchPaper;
+import library.items.Thesis;
+import library.members.Alumni;
+import library.members.Faculty;
+import library.members.Member;
+import library.members.Student;
+import library.util.IntList;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads items and members from the text data files in parallel.
+ * The file is memory-mapped, cut into chunks that end on line boundaries, and the chunks are parsed on a
+ * {@link ForkJoinPool}. The parsed records are then inserted into the library in file order in one bulk call,
+ * and per-line problems are reported with their line numbers just like the sequential loaders in
+ * {@link UniversityLibraryMain}.
+ *
+ * <p>Item lines have the form {@code id title author pageCount topic type copies}, followed by
+ * {@code degree university} for a thesis or {@code doi conference} for a research paper. Member lines have
+ * the form {@code id name email category}. Underscores in names, titles, authors and topics stand for
+ * spaces.</p>
+ *
+ * @author mianm
+ */
+public class CatalogLoader {
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Initializes a new instance of the CatalogLoader class that parses on the common pool.
+     */
+    public CatalogLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Initializes a new instance of the CatalogLoader class.
+     *
+     * @param pool The pool the chunks are parsed on.
+     */
+    public CatalogLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Loads library items from a file into the library.
+     *
+     * @param file    The path to the items file.
+     * @param library The UniversityLibrary instance to populate.
+     * @return The number of items added to the library.
+     * @throws IOException If the file cannot be read.
+     */
+    public int loadItems(Path file, UniversityLibrary library) throws IOException {
+        long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            ParsedLines<Item> parsed = parse(file, CatalogLoader::parseItem);
+            boolean[] added = library.addItems(parsed.records);
+            int count = report(parsed, added, "item");
+            loaded = true;
+            return count;
+        } finally {
+            library.getMetrics().operation("loadItems").record(start, loaded);
+        }
+    }
+
+    /**
+     * Loads library items from a file into an off-heap catalog.
+     * Each parsed item is dropped as soon as it has been copied into the catalog; rejected duplicates are kept
+     * until they have been reported.
+     *
+     * @param file    The path to the items file.
+     * @param catalog The catalog to populate.
+     * @return The number of items added to the catalog.
+     * @throws IOException If the file cannot be read.
+     */
+    public int loadItems(Path file, OffHeapCatalog catalog) throws IOException {
+        ParsedLines<Item> parsed = parse(file, CatalogLoader::parseItem);
+        boolean[] added = new boolean[parsed.records.size()];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = catalog.append(parsed.records.get(i)) >= 0;
+            if (added[i]) {
+                parsed.records.set(i, null);
+            }
+        }
+        return report(parsed, added, "item");
+    }
+
+    /**
+     * Loads library members from a file into the library.
+     *
+     * @param file    The path to the members file.
+     * @param library The UniversityLibrary instance to populate.
+     * @return The number of members registered with the library.
+     * @throws IOException If the file cannot be read.
+     */
+    public int loadMembers(Path file, UniversityLibrary library) throws IOException {
+        long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            ParsedLines<Member> parsed = parse(file, CatalogLoader::parseMember);
+            boolean[] added = library.registerMembers(parsed.records);
+            int count = report(parsed, added, "member");
+            loaded = true;
+            return count;
+        } finally {
+            library.getMetrics().operation("loadMembers").record(start, loaded);
+        }
+    }
+
+    /**
+     * Maps a file, splits it into line-aligned chunks and parses the chunks in parallel.
+     *
+     * @param file   The file to parse.
+     * @param parser The parser for a single line.
+     * @param <T>    The type of record on each line.
+     * @return The records and errors of all chunks, in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    private <T> ParsedLines<T> parse(Path file, LineParser<T> parser) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is larger than 2 GB: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int size = buffer.limit();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4) + 1);
+        List<ChunkTask<T>> tasks = new ArrayList<>();
+        int start = 0;
+        while (start < size) {
+            int end = Math.min(size, start + chunkSize);
+            while (end < size && buffer.get(end - 1) != '\n') {
+                end++;
+            }
+            tasks.add(new ChunkTask<>(buffer, start, end, parser));
+            start = end;
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).invoke();
+        } else {
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }
+            });
+        }
+
+        ParsedLines<T> result = new ParsedLines<>();
+        int lineOffset = 0;
+        for (ChunkTask<T> task : tasks) {
+            ParsedLines<T> chunk = task.join();
+            for (int i = 0; i < chunk.records.size(); i++) {
+                result.records.add(chunk.records.get(i));
+                result.recordLines.add(chunk.recordLines.get(i) + lineOffset);
+            }
+            for (int i = 0; i < chunk.errors.size(); i++) {
+                result.errors.add(chunk.errors.get(i));
+                result.errorLines.add(chunk.errorLines.get(i) + lineOffset);
+            }
+            lineOffset += chunk.lineCount;
+        }
+        return result;
+    }
+
+    /**
+     * Prints the parse errors and rejected duplicates in line order.
+     *
+     * @param parsed The parsed records and errors.
+     * @param added  Whether each record was accepted by the library.
+     * @param kind   The name of the record kind used in messages.
+     * @param <T>    The type of record.
+     * @return The number of accepted records.
+     */
+    private static <T> int report(ParsedLines<T> parsed, boolean[] added, String kind) {
+        int loadedCount = 0;
+        int error = 0;
+        for (int i = 0; i < added.length; i++) {
+            int line = parsed.recordLines.get(i);
+            while (error < parsed.errors.size() && parsed.errorLines.get(error) < line) {
+                System.err.println("Line " + parsed.errorLines.get(error) + ": " + parsed.errors.get(error));
+                error++;
+            }
+            if (added[i]) {
+                loadedCount++;
+            } else {
+                System.err.println("Line " + line + ": Skipped - duplicate " + kind + " id " + idOf(parsed.records.get(i)));
+            }
+        }
+        for (; error < parsed.errors.size(); error++) {
+            System.err.println("Line " + parsed.errorLines.get(error) + ": " + parsed.errors.get(error));
+        }
+        return loadedCount;
+    }
+
+    /**
+     * Retrieves the ID of a parsed record.
+     *
+     * @param record An item or a member.
+     * @return The ID of the record.
+     */
+    private static String idOf(Object record) {
+        return record instanceof Item ? ((Item) record).getId() : ((Member) record).getId();
+    }
+
+    /**
+     * Parses one line of the items file.
+     *
+     * @param data   The space-separated fields of the line.
+     * @param errors The chunk result that collects errors.
+     * @param line   The line number within the chunk.
+     * @return The item, or null if the line was skipped.
+     */
+    private static Item parseItem(String[] data, ParsedLines<Item> errors, int line) {
+        if (data.length < 7) {
+            errors.error(line, "Skipped - expected 7 fields, got " + data.length);
+            return null;
+        }
+        try {
+            String id = data[0];
+            String title = data[1].replace("_", " ");
+            String author = data[2].replace("_", " ");
+            int pageCount = Integer.parseInt(data[3]);
+            String topic = data[4].replace("_", " ");
+            String type = data[5];
+            int copies = Integer.parseInt(data[6]);
+
+            switch (type.toLowerCase()) {
+                case "book":
+                    return new Book(id, title, author, pageCount, topic, copies);
+                case "thesis":
+                    if (data.length < 9) {
+                        errors.error(line, "Skipped - expected 9 fields, got " + data.length);
+                        return null;
+                    }
+                    return new Thesis(data[7], data[8].replace("_", " "), id, title, author, pageCount, topic, copies);
+                case "researchpaper":
+                case "paper":
+                    if (data.length < 9) {
+                        errors.error(line, "Skipped - expected 9 fields, got " + data.length);
+                        return null;
+                    }
+                    return new ResearchPaper(data[7], data[8].replace("_", " "), id, title, author, pageCount, topic, copies);
+                default:
+                    errors.error(line, "Unknown item type - " + type);
+                    return null;
+            }
+        } catch (NumberFormatException e) {
+            errors.error(line, "Skipped - invalid number format");
+            return null;
+        }
+    }
+
+    /**
+     * Parses one line of the members file.
+     *
+     * @param data   The space-separated fields of the line.
+     * @param errors The chunk result that collects errors.
+     * @param line   The line number within the chunk.
+     * @return The member, or null if the line was skipped.
+     */
+    private static Member parseMember(String[] data, ParsedLines<Member> errors, int line) {
+        if (data.length < 4) {
+            errors.error(line, "Skipped - expected 4 fields, got " + data.length);
+            return null;
+        }
+        String category = data[3].trim().toLowerCase();
+        switch (category) {
+            case "student":
+                return new Student(data[0].trim(), data[1].replace("_", " "), data[2].trim());
+            case "faculty":
+                return new Faculty(data[0].trim(), data[1].replace("_", " "), data[2].trim());
+            case "alumni":
+                return new Alumni(data[0].trim(), data[1].replace("_", " "), data[2].trim());
+            default:
+                errors.error(line, "Unknown member category - " + category);
+                return null;
+        }
+    }
+
+    /**
+     * Parses the fields of a single line into a record.
+     *
+     * @param <T> The type of record.
+     */
+    private interface LineParser<T> {
+
+        /**
+         * Parses one line.
+         *
+         * @param data   The space-separated fields of the line.
+         * @param errors The chunk result that collects errors.
+         * @param line   The line number within the chunk.
+         * @return The record, or null if the line was skipped.
+         */
+        T parse(String[] data, ParsedLines<T> errors, int line);
+    }
+
+    /**
+     * The records and errors parsed from a chunk or a whole file, with their line numbers.
+     *
+     * @param <T> The type of record.
+     */
+    private static class ParsedLines<T> {
+        private final List<T> records = new ArrayList<>();
+        private final IntList recordLines = new IntList();
+        private final List<String> errors = new ArrayList<>();
+        private final IntList errorLines = new IntList();
+        private int lineCount;
+
+        /**
+         * Records a problem with a line.
+         *
+         * @param line    The line number.
+         * @param message The description of the problem.
+         */
+        void error(int line, String message) {
+            errorLines.add(line);
+            errors.add(message);
+        }
+    }
+
+    /**
+     * Parses the lines of one chunk of a mapped file.
+     * Tasks are never serialized, so the mapped file and the parser are transient.
+     *
+     * @param <T> The type of record.
+     */
+    private static class ChunkTask<T> extends RecursiveTask<ParsedLines<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final transient LineParser<T> parser;
+
+        /**
+         * Initializes a new instance of the ChunkTask class.
+         *
+         * @param buffer The mapped file.
+         * @param start  The first byte of the chunk.
+         * @param end    One past the last byte of the chunk.
+         * @param parser The parser for a single line.
+         */
+        ChunkTask(MappedByteBuffer buffer, int start, int end, LineParser<T> parser) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.parser = parser;
+        }
+
+        /**
+         * Parses every line of the chunk; line numbers start at 1 within the chunk.
+         *
+         * @return The records and errors of the chunk.
+         */
+        @Override
+        protected ParsedLines<T> compute() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            ParsedLines<T> result = new ParsedLines<>();
+            int lineStart = 0;
+            while (lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                result.lineCount++;
+                String line = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim();
+                lineStart = lineEnd + 1;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                T record = parser.parse(line.split(" "), result, result.lineCount);
+                if (record != null) {
+                    result.records.add(record);
+                    result.recordLines.add(result.lineCount);
+                }
+            }
+            return result;
+        }
+    }
+}
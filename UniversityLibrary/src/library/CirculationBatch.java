@@ -0,0 +1,140 @@
+package library;
+
+import java.util.Arrays;
+
+/**
+ * A list of borrow and return operations that are applied to the library together.
+ * Operations are stored in parallel arrays rather than as objects, and
+ * {@link UniversityLibrary#applyBatch(CirculationBatch)} reports the outcome of each one as a single byte.
+ * 
+ * <p>Used for bulk circulation such as the nightly returns from the book-drop sorter or the course-reserve
+ * checkouts at the start of term.</p>
+ * 
+ * @author mianm
+ */
+public class CirculationBatch {
+    /** The operation was applied. */
+    public static final byte OK = 0;
+    /** The member ID of the operation is not registered. */
+    public static final byte UNKNOWN_MEMBER = 1;
+    /** The item ID of the operation is not catalogued. */
+    public static final byte UNKNOWN_ITEM = 2;
+    /**
+     * The operation was refused: for a borrow because no copy was available or the member reached the borrow
+     * limit, for a return because the member does not hold the item.
+     */
+    public static final byte REJECTED = 3;
+
+    static final byte BORROW = 0;
+    static final byte RETURN = 1;
+    static final byte RETURN_DAMAGED = 2;
+
+    private byte[] kinds;
+    private String[] memberIds;
+    private String[] itemIds;
+    private int size;
+
+    /**
+     * Initializes a new, empty instance of the CirculationBatch class.
+     */
+    public CirculationBatch() {
+        this(16);
+    }
+
+    /**
+     * Initializes a new, empty instance of the CirculationBatch class.
+     *
+     * @param capacity The number of operations expected.
+     */
+    public CirculationBatch(int capacity) {
+        int initial = Math.max(1, capacity);
+        this.kinds = new byte[initial];
+        this.memberIds = new String[initial];
+        this.itemIds = new String[initial];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a borrow operation to the batch.
+     *
+     * @param memberId The ID of the member borrowing the item.
+     * @param itemId   The ID of the item being borrowed.
+     * @return This batch.
+     */
+    public CirculationBatch borrow(String memberId, String itemId) {
+        return add(BORROW, memberId, itemId);
+    }
+
+    /**
+     * Adds a return operation to the batch.
+     *
+     * @param memberId The ID of the member returning the item.
+     * @param itemId   The ID of the item being returned.
+     * @param damaged  Indicates whether the item is damaged or not.
+     * @return This batch.
+     */
+    public CirculationBatch returnItem(String memberId, String itemId, boolean damaged) {
+        return add(damaged ? RETURN_DAMAGED : RETURN, memberId, itemId);
+    }
+
+    /**
+     * Retrieves the number of operations in the batch.
+     *
+     * @return The number of operations.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the kind of an operation.
+     *
+     * @param index The position of the operation.
+     * @return {@link #BORROW}, {@link #RETURN} or {@link #RETURN_DAMAGED}.
+     */
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Retrieves the member ID of an operation.
+     *
+     * @param index The position of the operation.
+     * @return The member ID.
+     */
+    String memberId(int index) {
+        return memberIds[index];
+    }
+
+    /**
+     * Retrieves the item ID of an operation.
+     *
+     * @param index The position of the operation.
+     * @return The item ID.
+     */
+    String itemId(int index) {
+        return itemIds[index];
+    }
+
+    /**
+     * Appends an operation, growing the arrays when they are full.
+     *
+     * @param kind     The kind of operation.
+     * @param memberId The member ID.
+     * @param itemId   The item ID.
+     * @return This batch.
+     */
+    private CirculationBatch add(byte kind, String memberId, String itemId) {
+        if (size == kinds.length) {
+            int capacity = size + (size >> 1) + 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            memberIds = Arrays.copyOf(memberIds, capacity);
+            itemIds = Arrays.copyOf(itemIds, capacity);
+        }
+        kinds[size] = kind;
+        memberIds[size] = memberId;
+        itemIds[size] = itemId;
+        size++;
+        return this;
+    }
+}
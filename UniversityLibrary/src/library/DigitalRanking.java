@@ -0,0 +1,159 @@
+package library;
+
+import library.items.DigitalItem;
+import library.items.Item;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps track of the digital item with the highest value of one counter, such as views or downloads.
+ * Items with the same count are ordered by their catalog ordinal, so the item that was added first wins.
+ * 
+ * <p>Counters only go up as they are used, so the leader can only be overtaken by the item whose counter
+ * just went up. Each count is therefore offered to the ranking, which compares it with the count the leader
+ * had when it was last offered and swaps in the challenger with a compare-and-set if it is ahead. The leader
+ * and its count are replaced together, so every comparison sees a consistent pair and only the offered
+ * item's counter is read. Reading the leader is a single volatile read. Only when the counters of the leader
+ * are set lower is the catalog scanned again.</p>
+ * 
+ * <p>The ranking may be updated and read from several threads at once. Once every offer has returned, the
+ * leader is the item with the highest count among those offered. While the catalog is rescanned the leader
+ * is cleared, so {@link #first()} may briefly return null or an item that is about to be overtaken; counts
+ * offered during the rescan are kept.</p>
+ * 
+ * @author mianm
+ */
+public class DigitalRanking {
+    private final ToLongFunction<DigitalItem> counter;
+    private final AtomicReference<Leader> leader;
+
+    /**
+     * Initializes a new, empty instance of the DigitalRanking class.
+     *
+     * @param counter Reads the ranked counter of a digital item.
+     */
+    public DigitalRanking(ToLongFunction<DigitalItem> counter) {
+        this.counter = counter;
+        this.leader = new AtomicReference<>();
+    }
+
+    /**
+     * Offers an item whose counter went up, making it the leader if it is now ahead.
+     * Items without a digital version are ignored.
+     *
+     * @param item The item to offer.
+     */
+    public void update(Item item) {
+        DigitalItem digital = item.getDigitalVersion();
+        if (digital != null) {
+            offer(item, counter.applyAsLong(digital));
+        }
+    }
+
+    /**
+     * Offers an item whose digital version was replaced or whose counter was set, which may have lowered it.
+     *
+     * @param item  The item whose digital version changed.
+     * @param items The catalog, scanned if the item was the leader.
+     */
+    public void reset(Item item, List<Item> items) {
+        Leader current = leader.get();
+        if (current != null && current.item == item) {
+            rebuild(items);
+        } else {
+            update(item);
+        }
+    }
+
+    /**
+     * Finds the leader by scanning the catalog.
+     *
+     * @param items The catalog.
+     */
+    public void rebuild(List<Item> items) {
+        leader.set(null);
+        Item best = null;
+        long bestCount = -1;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            DigitalItem digital = item.getDigitalVersion();
+            if (digital != null) {
+                long count = counter.applyAsLong(digital);
+                if (count > bestCount) {
+                    bestCount = count;
+                    best = item;
+                }
+            }
+        }
+        if (best != null) {
+            offer(best, bestCount);
+        }
+    }
+
+    /**
+     * Retrieves the item with the highest count.
+     *
+     * @return The leading item, or null if no catalogued item has a digital version.
+     */
+    public Item first() {
+        Leader current = leader.get();
+        return current == null ? null : current.item;
+    }
+
+    /**
+     * Makes an item the leader if its count puts it ahead of the current leader, or records the higher
+     * count if it already leads.
+     *
+     * @param item  The item.
+     * @param count The count of the item.
+     */
+    private void offer(Item item, long count) {
+        Leader challenger = null;
+        while (true) {
+            Leader current = leader.get();
+            if (current != null) {
+                if (current.item == item ? count <= current.count : !isAhead(item, count, current)) {
+                    return;
+                }
+            }
+            if (challenger == null) {
+                challenger = new Leader(item, count);
+            }
+            if (leader.compareAndSet(current, challenger)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an item ranks ahead of the current leader.
+     *
+     * @param item    The challenging item.
+     * @param count   The count of the challenging item.
+     * @param current The current leader with its count.
+     * @return True if the item should replace the leader.
+     */
+    private static boolean isAhead(Item item, long count, Leader current) {
+        return count > current.count || (count == current.count && item.getOrdinal() < current.item.getOrdinal());
+    }
+
+    /**
+     * The leading item together with the count it was offered with.
+     */
+    private static final class Leader {
+        private final Item item;
+        private final long count;
+
+        /**
+         * Initializes a new instance of the Leader class.
+         *
+         * @param item  The leading item.
+         * @param count The count of the item.
+         */
+        Leader(Item item, long count) {
+            this.item = item;
+            this.count = count;
+        }
+    }
+}
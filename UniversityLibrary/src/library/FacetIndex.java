@@ -0,0 +1,296 @@
+package library;
+
+import library.items.Item;
+import library.util.IntList;
+import library.util.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Groups the catalog into facets by topic and by item type, and keeps running totals for every facet: the
+ * number of items, the number of available copies and the number of borrows.
+ *
+ * <p>Each facet holds the ordinals of its items, so listing a facet costs as much as the facet and listing the
+ * facets with their totals costs as much as the number of facets; neither scans the catalog. Topic facets are
+ * found by topic code from the catalog's topic {@link SymbolTable}, type facets by the item's class.</p>
+ *
+ * <p>Items are added under the library's catalog write lock and facet item lists are read under its read
+ * lock. The totals are adders that circulation updates from several threads without the catalog lock.</p>
+ *
+ * @author mianm
+ */
+public class FacetIndex {
+    private final SymbolTable topicCodes;
+    private volatile Facet[] topics;
+    private final Map<Class<?>, Facet> types;
+
+    /**
+     * Initializes a new, empty instance of the FacetIndex class.
+     *
+     * @param topicCodes The topic table that the catalogued items are encoded in.
+     */
+    public FacetIndex(SymbolTable topicCodes) {
+        this.topicCodes = topicCodes;
+        this.topics = new Facet[16];
+        this.types = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a catalogued item to its topic and type facets.
+     *
+     * @param item The item, with its ordinal and codes already set.
+     */
+    public void add(Item item) {
+        int code = item.getTopicCode();
+        if (code >= 0) {
+            if (code >= topics.length) {
+                topics = Arrays.copyOf(topics, Math.max(code + 1, topics.length * 2));
+            }
+            if (topics[code] == null) {
+                topics[code] = new Facet(item.getTopic());
+            }
+            topics[code].add(item);
+        }
+        types.computeIfAbsent(item.getClass(), type -> new Facet(type.getSimpleName())).add(item);
+    }
+
+    /**
+     * Updates the available copy totals of the item's facets.
+     *
+     * @param item          The item whose available copies changed.
+     * @param previousCount The number of available copies before the change.
+     */
+    public void availableCopiesChanged(Item item, int previousCount) {
+        int delta = item.getCopiesCount() - previousCount;
+        Facet topic = topicFacet(item);
+        if (topic != null) {
+            topic.availableCopies.add(delta);
+        }
+        Facet type = types.get(item.getClass());
+        if (type != null) {
+            type.availableCopies.add(delta);
+        }
+    }
+
+    /**
+     * Updates the borrow totals of the item's facets.
+     *
+     * @param item          The item whose borrow count changed.
+     * @param previousCount The borrow count before the change.
+     */
+    public void borrowCountChanged(Item item, int previousCount) {
+        int delta = item.getBorrowCount() - previousCount;
+        Facet topic = topicFacet(item);
+        if (topic != null) {
+            topic.borrows.add(delta);
+        }
+        Facet type = types.get(item.getClass());
+        if (type != null) {
+            type.borrows.add(delta);
+        }
+    }
+
+    /**
+     * Retrieves the ordinals of the items on a topic.
+     *
+     * @param topic The topic, spelled exactly as catalogued.
+     * @return A copy of the ordinals, in the order the items were added.
+     */
+    public IntList topicOrdinals(String topic) {
+        int code = topicCodes.find(topic);
+        Facet[] current = topics;
+        return code >= 0 && code < current.length ? ordinalsOf(current[code]) : new IntList(0);
+    }
+
+    /**
+     * Retrieves the ordinals of the items of a type.
+     *
+     * @param type The simple class name of the type, such as {@code Book} or {@code Thesis}.
+     * @return A copy of the ordinals, in the order the items were added.
+     */
+    public IntList typeOrdinals(String type) {
+        for (Facet facet : types.values()) {
+            if (facet.name.equals(type)) {
+                return ordinalsOf(facet);
+            }
+        }
+        return new IntList(0);
+    }
+
+    /**
+     * Retrieves the totals of every topic facet.
+     *
+     * @return The topic facets, sorted by topic.
+     */
+    public List<FacetCount> topicCounts() {
+        List<FacetCount> counts = new ArrayList<>();
+        for (Facet facet : topics) {
+            if (facet != null) {
+                counts.add(facet.count());
+            }
+        }
+        counts.sort(Comparator.comparing(FacetCount::getName));
+        return counts;
+    }
+
+    /**
+     * Retrieves the totals of every type facet.
+     *
+     * @return The type facets, sorted by type name.
+     */
+    public List<FacetCount> typeCounts() {
+        List<FacetCount> counts = new ArrayList<>();
+        for (Facet facet : types.values()) {
+            counts.add(facet.count());
+        }
+        counts.sort(Comparator.comparing(FacetCount::getName));
+        return counts;
+    }
+
+    /**
+     * Finds the topic facet of an item.
+     *
+     * @param item The item.
+     * @return The facet, or null if the item has no topic or is not indexed.
+     */
+    private Facet topicFacet(Item item) {
+        int code = item.getTopicCode();
+        Facet[] current = topics;
+        return code >= 0 && code < current.length ? current[code] : null;
+    }
+
+    /**
+     * Copies the ordinals of a facet.
+     *
+     * @param facet The facet, or null.
+     * @return A copy of its ordinals, empty for null.
+     */
+    private static IntList ordinalsOf(Facet facet) {
+        if (facet == null) {
+            return new IntList(0);
+        }
+        IntList copy = new IntList(facet.ordinals.size());
+        for (int i = 0; i < facet.ordinals.size(); i++) {
+            copy.add(facet.ordinals.get(i));
+        }
+        return copy;
+    }
+
+    /**
+     * The items and running totals of one facet.
+     */
+    private static final class Facet {
+        private final String name;
+        private final IntList ordinals;
+        private final LongAdder availableCopies;
+        private final LongAdder borrows;
+
+        /**
+         * Initializes a new, empty instance of the Facet class.
+         *
+         * @param name The topic or type name of the facet.
+         */
+        Facet(String name) {
+            this.name = name;
+            this.ordinals = new IntList();
+            this.availableCopies = new LongAdder();
+            this.borrows = new LongAdder();
+        }
+
+        /**
+         * Adds an item and its current totals to the facet.
+         *
+         * @param item The item.
+         */
+        void add(Item item) {
+            ordinals.add(item.getOrdinal());
+            availableCopies.add(item.getCopiesCount());
+            borrows.add(item.getBorrowCount());
+        }
+
+        /**
+         * Reads the totals of the facet.
+         *
+         * @return The totals.
+         */
+        FacetCount count() {
+            return new FacetCount(name, ordinals.size(), availableCopies.sum(), borrows.sum());
+        }
+    }
+
+    /**
+     * The totals of one facet at the time they were read.
+     */
+    public static final class FacetCount {
+        private final String name;
+        private final int items;
+        private final long availableCopies;
+        private final long borrows;
+
+        /**
+         * Initializes a new instance of the FacetCount class.
+         *
+         * @param name            The topic or type name of the facet.
+         * @param items           The number of items in the facet.
+         * @param availableCopies The number of available copies of those items.
+         * @param borrows         The number of times those items have been borrowed.
+         */
+        FacetCount(String name, int items, long availableCopies, long borrows) {
+            this.name = name;
+            this.items = items;
+            this.availableCopies = availableCopies;
+            this.borrows = borrows;
+        }
+
+        /**
+         * Retrieves the topic or type name of the facet.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Retrieves the number of items in the facet.
+         *
+         * @return The number of items.
+         */
+        public int getItems() {
+            return items;
+        }
+
+        /**
+         * Retrieves the number of available copies of the items in the facet.
+         *
+         * @return The number of available copies.
+         */
+        public long getAvailableCopies() {
+            return availableCopies;
+        }
+
+        /**
+         * Retrieves the number of times the items in the facet have been borrowed.
+         *
+         * @return The number of borrows.
+         */
+        public long getBorrows() {
+            return borrows;
+        }
+
+        /**
+         * Formats the totals for display.
+         *
+         * @return The name followed by the totals.
+         */
+        @Override
+        public String toString() {
+            return name + " (" + items + " items, " + availableCopies + " available, " + borrows + " borrows)";
+        }
+    }
+}
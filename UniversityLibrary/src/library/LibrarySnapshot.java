@@ -0,0 +1,658 @@
+package library;
+
+import library.items.Book;
+import library.items.Copy;
+import library.items.DigitalItem;
+import library.items.Item;
+import library.items.ResearchPaper;
+import library.items.Thesis;
+import library.members.Alumni;
+import library.members.Faculty;
+import library.members.Loan;
+import library.members.Member;
+import library.members.RepairSection;
+import library.members.Student;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and loads a versioned binary snapshot of the complete state of a library through memory-mapped I/O.
+ * A snapshot holds every item with its copies, damage state and digital version, every member with the copies
+ * they hold and the items they have borrowed, the repair archive and the transaction list.
+ *
+ * <p>Loading a snapshot avoids the text loaders entirely: no lines are split, no underscores are replaced and
+ * copies keep the IDs and numbers they were saved with instead of generating new ones. Only copies that have been created
+ * are written, together with the number still to be created, so a round trip keeps copies lazy. The text
+ * files remain the way to import a catalog for the first time.</p>
+ *
+ * <p>The repair queue is not part of a snapshot. Loading one queues every damaged copy that is not waiting in
+ * the repair archive again, so repairs that were pending when the snapshot was written still happen. Both
+ * directions go through the file in windows of the same size, so any snapshot that can be written can be
+ * loaded, however large.</p>
+ *
+ * <p>All numbers are big-endian. Strings are stored as a length followed by UTF-8 bytes; a length of -1 stands
+ * for null. Items are referred to by ID and must appear in the item section before they are referenced.</p>
+ *
+ * @author mianm
+ */
+public class LibrarySnapshot {
+    private static final int MAGIC = 0x554C534E;
+    private static final int VERSION = 7;
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    private static final byte ITEM_BOOK = 1;
+    private static final byte ITEM_THESIS = 2;
+    private static final byte ITEM_RESEARCH_PAPER = 3;
+
+    private static final byte MEMBER_PLAIN = 0;
+    private static final byte MEMBER_STUDENT = 1;
+    private static final byte MEMBER_FACULTY = 2;
+    private static final byte MEMBER_ALUMNI = 3;
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the library to a file, replacing any previous contents.
+     * The library should not be changed while the snapshot is written.
+     *
+     * @param library The library to save.
+     * @param file    The snapshot file.
+     * @throws IOException If the file cannot be written or an item has a type the format does not know.
+     */
+    public static void write(UniversityLibrary library, Path file) throws IOException {
+        List<Item> items = library.getItems();
+        List<Member> members = library.getMembers();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedOutput out = new MappedOutput(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+
+            out.putInt(items.size());
+            for (Item item : items) {
+                writeItem(out, item);
+            }
+
+            out.putInt(members.size());
+            for (Member member : members) {
+                writeMember(out, member);
+            }
+
+            RepairSection repairs = library.getRepairSection();
+            List<Item> archived = repairs.getArchivedItems();
+            out.putInt(repairs.getRepairCount());
+            out.putInt(archived.size());
+            for (Item item : archived) {
+                out.putString(item.getId());
+            }
+
+            TransactionHistory history = library.getTransactionHistory();
+            synchronized (history) {
+                int transactionCount = history.size();
+                out.putInt(transactionCount);
+                for (int row = 0; row < transactionCount; row++) {
+                    out.putLong(history.getId(row));
+                    out.putByte(history.getType(row));
+                    out.putLong(history.getTimestamp(row));
+                    out.putString(memberIdOf(members, history.getMemberOrdinal(row)));
+                    out.putString(itemIdOf(items, history.getItemOrdinal(row)));
+                }
+            }
+            out.finish();
+        }
+    }
+
+    /**
+     * Retrieves the ID of a member by ordinal.
+     *
+     * @param members The members by ordinal.
+     * @param ordinal The member ordinal, or -1.
+     * @return The member ID, or null if the ordinal is -1.
+     */
+    private static String memberIdOf(List<Member> members, int ordinal) {
+        return ordinal < 0 ? null : members.get(ordinal).getId();
+    }
+
+    /**
+     * Retrieves the ID of an item by ordinal.
+     *
+     * @param items   The items by ordinal.
+     * @param ordinal The item ordinal, or -1.
+     * @return The item ID, or null if the ordinal is -1.
+     */
+    private static String itemIdOf(List<Item> items, int ordinal) {
+        return ordinal < 0 ? null : items.get(ordinal).getId();
+    }
+
+    /**
+     * Loads a library from a snapshot file.
+     *
+     * @param file       The snapshot file.
+     * @param concurrent True to create the library in concurrent mode.
+     * @return The restored library.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static UniversityLibrary load(Path file, boolean concurrent) throws IOException {
+        return load(file, concurrent, 0);
+    }
+
+    /**
+     * Loads a library from a snapshot file.
+     *
+     * @param file       The snapshot file.
+     * @param concurrent True to create the library in concurrent mode.
+     * @param nodeId     The node ID the restored library issues transaction IDs under.
+     * @return The restored library.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static UniversityLibrary load(Path file, boolean concurrent, int nodeId) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            try {
+                return read(new MappedInput(channel), concurrent, nodeId);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt snapshot: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Loads a library from a snapshot file in single-threaded mode.
+     *
+     * @param file The snapshot file.
+     * @return The restored library.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static UniversityLibrary load(Path file) throws IOException {
+        return load(file, false);
+    }
+
+    /**
+     * Writes one item with its copies and digital version.
+     *
+     * @param out  The output.
+     * @param item The item.
+     * @throws IOException If the item has a type the format does not know.
+     */
+    private static void writeItem(MappedOutput out, Item item) throws IOException {
+        if (item instanceof Book) {
+            out.putByte(ITEM_BOOK);
+            out.putLong(((Book) item).getIsbnValue());
+        } else if (item instanceof Thesis) {
+            out.putByte(ITEM_THESIS);
+            out.putString(((Thesis) item).getDegree());
+            out.putString(((Thesis) item).getUniversity());
+        } else if (item instanceof ResearchPaper) {
+            out.putByte(ITEM_RESEARCH_PAPER);
+            out.putString(((ResearchPaper) item).getDoi());
+            out.putString(((ResearchPaper) item).getConference());
+        } else {
+            throw new IOException("Cannot snapshot item type " + item.getClass().getName());
+        }
+        out.putString(item.getId());
+        out.putString(item.getTitle());
+        out.putString(item.getAuthor());
+        out.putInt(item.getPageCount());
+        out.putString(item.getTopic());
+        out.putInt(item.getBorrowCount());
+
+        List<Copy> copies = item.getCreatedCopies();
+        out.putInt(item.getUncreatedCopyCount());
+        out.putInt(item.getNumberedCopyCount());
+        out.putInt(copies.size());
+        for (Copy c : copies) {
+            out.putLong(c.getCopyIdValue());
+            out.putInt(c.getNumber());
+            out.putByte((byte) ((c.getAvailable() ? 1 : 0) | (c.getDamaged() ? 2 : 0)));
+            out.putInt(c.getDamageCount());
+        }
+
+        DigitalItem digital = item.getDigitalVersion();
+        out.putByte((byte) (digital == null ? 0 : 1));
+        if (digital != null) {
+            out.putString(digital.getId());
+            out.putLong(digital.getViews());
+            out.putLong(digital.getDownloads());
+        }
+    }
+
+    /**
+     * Writes one member with the items they hold and have borrowed.
+     *
+     * @param out    The output.
+     * @param member The member.
+     */
+    private static void writeMember(MappedOutput out, Member member) {
+        if (member instanceof Student) {
+            out.putByte(MEMBER_STUDENT);
+            out.putLong(((Student) member).getStudentIdValue());
+        } else if (member instanceof Faculty) {
+            out.putByte(MEMBER_FACULTY);
+            out.putLong(((Faculty) member).getFacultyIdValue());
+        } else if (member instanceof Alumni) {
+            out.putByte(MEMBER_ALUMNI);
+        } else {
+            out.putByte(MEMBER_PLAIN);
+        }
+        out.putString(member.getId());
+        out.putString(member.getName());
+        out.putString(member.getEmail());
+        out.putInt(member.getTotborrowCount());
+        out.putInt(member.getBorrowLimit());
+        out.putInt(member.getLoyalityPoints());
+        List<Loan> loans = member.getLoans();
+        out.putInt(loans.size());
+        for (Loan loan : loans) {
+            out.putString(loan.getItem().getId());
+            out.putLong(loan.getCopy().getCopyIdValue());
+        }
+        writeItemIds(out, member.getAllBorrowedItems());
+    }
+
+    /**
+     * Writes the IDs of a list of items.
+     *
+     * @param out   The output.
+     * @param items The items.
+     */
+    private static void writeItemIds(MappedOutput out, List<Item> items) {
+        out.putInt(items.size());
+        for (Item item : items) {
+            out.putString(item.getId());
+        }
+    }
+
+    /**
+     * Reads a complete snapshot.
+     *
+     * @param in         The input positioned at the start of the snapshot.
+     * @param concurrent True to create the library in concurrent mode.
+     * @param nodeId     The node ID the restored library issues transaction IDs under.
+     * @return The restored library.
+     * @throws IOException If the snapshot header is not valid.
+     */
+    private static UniversityLibrary read(MappedInput in, boolean concurrent, int nodeId) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a library snapshot");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        UniversityLibrary library = new UniversityLibrary(concurrent, nodeId);
+        int itemCount = in.getInt();
+        Map<String, Item> itemsById = new HashMap<>(itemCount * 2);
+        for (int i = 0; i < itemCount; i++) {
+            Item item = readItem(in);
+            if (library.addItem(item)) {
+                itemsById.put(item.getId(), item);
+            }
+        }
+
+        int memberCount = in.getInt();
+        Map<String, Member> membersById = new HashMap<>(memberCount * 2);
+        for (int i = 0; i < memberCount; i++) {
+            Member member = readMember(in, itemsById);
+            if (library.registerMember(member)) {
+                membersById.put(member.getId(), member);
+            }
+        }
+
+        int repairCount = in.getInt();
+        library.getRepairSection().restoreState(repairCount, readItems(in, itemsById));
+        library.requeueDamagedCopies();
+
+        int transactionCount = in.getInt();
+        for (int i = 0; i < transactionCount; i++) {
+            long id = in.getLong();
+            byte type = in.get();
+            long timestamp = in.getLong();
+            Member member = membersById.get(in.getString());
+            Item item = itemsById.get(in.getString());
+            library.restoreTransaction(id, type, timestamp, member, item);
+        }
+        return library;
+    }
+
+    /**
+     * Reads one item with its copies and digital version.
+     *
+     * @param in The input.
+     * @return The item.
+     * @throws IOException If the item type is unknown.
+     */
+    private static Item readItem(MappedInput in) throws IOException {
+        byte type = in.get();
+        long isbn = type == ITEM_BOOK ? in.getLong() : 0;
+        String first = type == ITEM_BOOK ? null : in.getString();
+        String second = type == ITEM_BOOK ? null : in.getString();
+        String id = in.getString();
+        String title = in.getString();
+        String author = in.getString();
+        int pageCount = in.getInt();
+        String topic = in.getString();
+        int borrowCount = in.getInt();
+        int uncreated = in.getInt();
+
+        Item item;
+        switch (type) {
+            case ITEM_BOOK:
+                item = new Book(isbn, id, title, author, pageCount, topic, uncreated);
+                break;
+            case ITEM_THESIS:
+                item = new Thesis(first, second, id, title, author, pageCount, topic, uncreated);
+                break;
+            case ITEM_RESEARCH_PAPER:
+                item = new ResearchPaper(first, second, id, title, author, pageCount, topic, uncreated);
+                break;
+            default:
+                throw new IOException("Unknown item type " + type);
+        }
+        item.setBorrowCount(borrowCount);
+        item.restoreNumberedCopyCount(in.getInt());
+
+        int copyCount = in.getInt();
+        for (int i = 0; i < copyCount; i++) {
+            long copyId = in.getLong();
+            int number = in.getInt();
+            byte flags = in.get();
+            int damageCount = in.getInt();
+            item.addCopy(new Copy(copyId, number, (flags & 1) != 0, (flags & 2) != 0, damageCount));
+        }
+
+        if (in.get() != 0) {
+            DigitalItem digital = new DigitalItem(in.getString());
+            digital.setViews(in.getLong());
+            digital.setDownloads(in.getLong());
+            item.setDigitalVersion(digital);
+        }
+        return item;
+    }
+
+    /**
+     * Reads one member with the items they hold and have borrowed.
+     *
+     * @param in        The input.
+     * @param itemsById The items read so far.
+     * @return The member.
+     */
+    private static Member readMember(MappedInput in, Map<String, Item> itemsById) {
+        byte type = in.get();
+        long memberNumber = type == MEMBER_STUDENT || type == MEMBER_FACULTY ? in.getLong() : 0;
+        String id = in.getString();
+        String name = in.getString();
+        String email = in.getString();
+
+        Member member;
+        switch (type) {
+            case MEMBER_STUDENT:
+                member = new Student(id, name, email, memberNumber);
+                break;
+            case MEMBER_FACULTY:
+                member = new Faculty(id, name, email, memberNumber);
+                break;
+            case MEMBER_ALUMNI:
+                member = new Alumni(id, name, email);
+                break;
+            default:
+                member = new Member(id, name, email);
+                break;
+        }
+        int totborrowCount = in.getInt();
+        int borrowLimit = in.getInt();
+        int loyalityPoints = in.getInt();
+        int loanCount = in.getInt();
+        List<Copy> currentCopies = new ArrayList<>(loanCount);
+        List<Item> currentItems = new ArrayList<>(loanCount);
+        for (int i = 0; i < loanCount; i++) {
+            Item item = itemsById.get(in.getString());
+            long copyId = in.getLong();
+            Copy copy = item == null ? null : findCopy(item, copyId);
+            if (copy != null) {
+                currentCopies.add(copy);
+                currentItems.add(item);
+            }
+        }
+        List<Item> borrowed = readItems(in, itemsById);
+        member.restoreState(totborrowCount, borrowLimit, loyalityPoints, currentCopies, currentItems, borrowed);
+        return member;
+    }
+
+    /**
+     * Finds a created copy of an item by its ID, without creating the copies that are only counted.
+     *
+     * @param item   The item.
+     * @param copyId The ID of the copy.
+     * @return The copy, or null if the item has no copy with that ID.
+     */
+    private static Copy findCopy(Item item, long copyId) {
+        for (Copy copy : item.getCreatedCopies()) {
+            if (copy.getCopyIdValue() == copyId) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a list of item IDs and resolves them, skipping IDs that are not in the catalog.
+     *
+     * @param in        The input.
+     * @param itemsById The items read so far.
+     * @return The items.
+     */
+    private static List<Item> readItems(MappedInput in, Map<String, Item> itemsById) {
+        int count = in.getInt();
+        List<Item> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = itemsById.get(in.getString());
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes to a file through a sliding memory-mapped window that is remapped further along as it fills.
+     */
+    private static class MappedOutput {
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long base;
+
+        /**
+         * Maps the first window of the file.
+         *
+         * @param channel The file to write.
+         * @throws IOException If the file cannot be mapped.
+         */
+        MappedOutput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.base = 0;
+            this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_SIZE);
+        }
+
+        /**
+         * Makes sure the window has room for the given number of bytes.
+         *
+         * @param bytes The number of bytes about to be written.
+         */
+        private void ensure(int bytes) {
+            if (window.remaining() >= bytes) {
+                return;
+            }
+            base += window.position();
+            try {
+                window = channel.map(FileChannel.MapMode.READ_WRITE, base, Math.max(WINDOW_SIZE, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes one byte.
+         *
+         * @param value The byte.
+         */
+        void putByte(byte value) {
+            ensure(1);
+            window.put(value);
+        }
+
+        /**
+         * Writes a four-byte integer.
+         *
+         * @param value The integer.
+         */
+        void putInt(int value) {
+            ensure(4);
+            window.putInt(value);
+        }
+
+        /**
+         * Writes an eight-byte integer.
+         *
+         * @param value The integer.
+         */
+        void putLong(long value) {
+            ensure(8);
+            window.putLong(value);
+        }
+
+        /**
+         * Writes a length-prefixed UTF-8 string.
+         *
+         * @param value The string, or null.
+         */
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            window.putInt(bytes.length);
+            window.put(bytes);
+        }
+
+        /**
+         * Flushes the written bytes and cuts the file to the written length.
+         *
+         * @throws IOException If the file cannot be truncated.
+         */
+        void finish() throws IOException {
+            window.force();
+            channel.truncate(base + window.position());
+        }
+    }
+
+    /**
+     * Reads from a snapshot through a sliding memory-mapped window, the counterpart of {@link MappedOutput}, so
+     * snapshots of any size that can be written can also be read.
+     */
+    private static class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long base;
+        private byte[] scratch;
+
+        /**
+         * Maps the first window of the file.
+         *
+         * @param channel The file to read.
+         * @throws IOException If the file cannot be mapped.
+         */
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.base = 0;
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, size));
+            this.scratch = new byte[64];
+        }
+
+        /**
+         * Makes sure the window holds the given number of bytes after the read position.
+         *
+         * @param bytes The number of bytes about to be read.
+         * @throws BufferUnderflowException If the file ends first.
+         */
+        private void ensure(int bytes) {
+            if (window.remaining() >= bytes) {
+                return;
+            }
+            base += window.position();
+            long length = Math.min(Math.max(WINDOW_SIZE, bytes), size - base);
+            if (length < bytes) {
+                throw new BufferUnderflowException();
+            }
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads one byte.
+         *
+         * @return The byte.
+         */
+        byte get() {
+            ensure(1);
+            return window.get();
+        }
+
+        /**
+         * Reads a four-byte integer.
+         *
+         * @return The integer.
+         */
+        int getInt() {
+            ensure(4);
+            return window.getInt();
+        }
+
+        /**
+         * Reads an eight-byte integer.
+         *
+         * @return The integer.
+         */
+        long getLong() {
+            ensure(8);
+            return window.getLong();
+        }
+
+        /**
+         * Reads a length-prefixed UTF-8 string.
+         *
+         * @return The string, or null.
+         */
+        String getString() {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            ensure(length);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            window.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
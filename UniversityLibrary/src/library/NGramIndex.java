@@ -0,0 +1,270 @@
+package library;
+
+import library.util.IntList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index that answers case-insensitive substring queries over one text field of the catalog.
+ * Every item is lower-cased once when it is indexed, and every 1-, 2- and 3-character gram of the folded
+ * text gets a posting list of item ordinals.
+ * 
+ * <p>Queries of up to three characters are answered directly from the matching posting list. Longer queries
+ * start from the rarest trigram of the query and confirm each candidate against the folded text, so the
+ * results are exactly the items whose text contains the query, in the order the items were indexed.</p>
+ * 
+ * <p>Fuzzy queries find the items whose text contains a substring within a few edits of the query. A text
+ * within {@code k} edits of a query of {@code m} characters still contains at least {@code m - 1 - 2k} of the
+ * query's bigrams, so it must contain one of the {@code 2k + 1} rarest of them. The postings of those bigrams
+ * are the candidates, and each candidate is confirmed by computing its edit distance to the query.</p>
+ * 
+ * @author mianm
+ */
+public class NGramIndex {
+    private static final int MAX_GRAM = 3;
+
+    private final Map<Long, IntList> postings;
+    private final List<String> folded;
+
+    /**
+     * Initializes a new, empty instance of the NGramIndex class.
+     */
+    public NGramIndex() {
+        this.postings = new HashMap<>();
+        this.folded = new ArrayList<>();
+    }
+
+    /**
+     * Adds the text of the next item to the index.
+     * Ordinals must be added in increasing order, starting from zero.
+     *
+     * @param ordinal The ordinal of the item in the catalog.
+     * @param text    The text to index.
+     */
+    public void add(int ordinal, String text) {
+        if (ordinal != folded.size()) {
+            throw new IllegalArgumentException("Expected ordinal " + folded.size() + " but got " + ordinal);
+        }
+        String lower = text == null ? "" : text.toLowerCase();
+        folded.add(lower);
+        for (int start = 0; start < lower.length(); start++) {
+            int end = Math.min(lower.length(), start + MAX_GRAM);
+            for (int stop = start + 1; stop <= end; stop++) {
+                IntList list = postings.computeIfAbsent(gramKey(lower, start, stop), k -> new IntList(2));
+                if (list.last() != ordinal) {
+                    list.add(ordinal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every indexed item whose text contains the query, ignoring case.
+     *
+     * @param query The text to search for.
+     * @return The ordinals of the matching items, in increasing order.
+     */
+    public IntList search(String query) {
+        return search(query, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first indexed items from a given ordinal on whose text contains the query, ignoring case.
+     * Matching stops as soon as the limit is reached, so a page of a broad query costs as much as the page.
+     *
+     * @param query The text to search for.
+     * @param from  The smallest ordinal to return.
+     * @param limit The maximum number of ordinals to return.
+     * @return The ordinals of the matching items, in increasing order.
+     */
+    public IntList search(String query, int from, int limit) {
+        String lower = query.toLowerCase();
+        IntList result = new IntList();
+        if (lower.isEmpty()) {
+            for (int i = from; i < folded.size() && result.size() < limit; i++) {
+                result.add(i);
+            }
+            return result;
+        }
+        if (lower.length() <= MAX_GRAM) {
+            IntList list = postings.get(gramKey(lower, 0, lower.length()));
+            for (int i = list == null ? 0 : lowerBound(list, from); list != null && i < list.size()
+                    && result.size() < limit; i++) {
+                result.add(list.get(i));
+            }
+            return result;
+        }
+        IntList rarest = null;
+        for (int start = 0; start + MAX_GRAM <= lower.length(); start++) {
+            IntList list = postings.get(gramKey(lower, start, start + MAX_GRAM));
+            if (list == null) {
+                return result;
+            }
+            if (rarest == null || list.size() < rarest.size()) {
+                rarest = list;
+            }
+        }
+        for (int i = lowerBound(rarest, from); i < rarest.size() && result.size() < limit; i++) {
+            int ordinal = rarest.get(i);
+            if (folded.get(ordinal).contains(lower)) {
+                result.add(ordinal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first position in a posting list that holds an ordinal of at least the given value.
+     *
+     * @param list The posting list, in increasing order.
+     * @param from The smallest ordinal wanted.
+     * @return The position, or the size of the list if every ordinal is smaller.
+     */
+    private static int lowerBound(IntList list, int from) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid) < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the indexed items whose text contains the query with at most the given number of typos, ignoring
+     * case. A typo is a character inserted, deleted or replaced. The budget is lowered for short queries so
+     * that a match always shares at least one bigram with the query: one edit for four or five characters,
+     * two for six or seven, and so on.
+     *
+     * @param query    The text to search for.
+     * @param maxEdits The largest number of typos a match may have.
+     * @param limit    The maximum number of results.
+     * @return The ordinals of the matching items, closest first and in increasing order within one distance.
+     */
+    public IntList fuzzySearch(String query, int maxEdits, int limit) {
+        String lower = query.toLowerCase();
+        IntList result = new IntList();
+        if (lower.length() < 2) {
+            IntList exact = search(lower);
+            for (int i = 0; i < Math.min(limit, exact.size()); i++) {
+                result.add(exact.get(i));
+            }
+            return result;
+        }
+        int edits = Math.max(0, Math.min(maxEdits, (lower.length() - 2) / 2));
+        IntList[] grams = new IntList[lower.length() - 1];
+        for (int start = 0; start < grams.length; start++) {
+            IntList list = postings.get(gramKey(lower, start, start + 2));
+            grams[start] = list == null ? new IntList(0) : list;
+        }
+        Arrays.sort(grams, (a, b) -> Integer.compare(a.size(), b.size()));
+        IntList candidates = union(grams, 2 * edits + 1);
+        int[][] rows = new int[2][lower.length() + 1];
+        long[] matches = new long[candidates.size()];
+        int count = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int ordinal = candidates.get(i);
+            int distance = substringDistance(lower, folded.get(ordinal), rows);
+            if (distance <= edits) {
+                matches[count++] = ((long) distance << 32) | ordinal;
+            }
+        }
+        Arrays.sort(matches, 0, count);
+        for (int i = 0; i < Math.min(limit, count); i++) {
+            result.add((int) matches[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Merges the first posting lists into one list without duplicates.
+     *
+     * @param lists The posting lists, each in increasing order.
+     * @param count The number of lists to merge.
+     * @return The ordinals in any of the lists, in increasing order.
+     */
+    private static IntList union(IntList[] lists, int count) {
+        count = Math.min(count, lists.length);
+        int[] positions = new int[count];
+        IntList merged = new IntList();
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (positions[i] < lists[i].size()) {
+                    next = Math.min(next, lists[i].get(positions[i]));
+                }
+            }
+            if (next == Integer.MAX_VALUE) {
+                return merged;
+            }
+            merged.add(next);
+            for (int i = 0; i < count; i++) {
+                if (positions[i] < lists[i].size() && lists[i].get(positions[i]) == next) {
+                    positions[i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the smallest number of edits that turn the query into some substring of the text.
+     *
+     * @param query The folded query.
+     * @param text  The folded text.
+     * @param rows  Two scratch rows of at least the query length plus one.
+     * @return The edit distance.
+     */
+    private static int substringDistance(String query, String text, int[][] rows) {
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int i = 0; i <= query.length(); i++) {
+            previous[i] = i;
+        }
+        int best = previous[query.length()];
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            current[0] = 0;
+            for (int i = 1; i <= query.length(); i++) {
+                int replace = previous[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+                current[i] = Math.min(replace, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            best = Math.min(best, current[query.length()]);
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return best;
+    }
+
+    /**
+     * Retrieves the number of items in the index.
+     *
+     * @return The number of indexed items.
+     */
+    public int size() {
+        return folded.size();
+    }
+
+    /**
+     * Packs up to three characters and the gram length into a single key.
+     *
+     * @param text  The folded text.
+     * @param start The first character of the gram.
+     * @param stop  One past the last character of the gram.
+     * @return The key of the gram.
+     */
+    private static long gramKey(String text, int start, int stop) {
+        long key = stop - start;
+        for (int i = start; i < stop; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,904 @@
+package library;
+
+import library.items.Book;
+import library.items.Copy;
+import library.items.Item;
+import library.items.ResearchPaper;
+import library.items.Thesis;
+import library.util.IntList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores item metadata and copy state outside the Java heap, for catalogs with millions of items.
+ * An item takes one fixed-size record and each copy a 16-byte slot in pages of direct memory; strings are kept
+ * as UTF-8 in an arena of direct pages. The heap only holds the page tables and an open-addressing table of
+ * ordinals by item ID, so the garbage collector sees a few hundred objects however large the catalog grows.
+ *
+ * <p>Items are referred to by ordinal. A {@link Cursor} reads the fields of one item at a time without
+ * creating an object per item, and search, checkout, return and popularity work on the records directly.
+ * {@link #materialize(int)} builds an ordinary {@link Item} from a record when one is needed.</p>
+ *
+ * <p>Search uses trigram posting lists of the ASCII-folded UTF-8 bytes of the title, author and topic, kept on
+ * the heap as primitive arrays. A query of three or more bytes starts from its rarest trigram and confirms each
+ * candidate against the stored field; shorter queries scan the records. Popularity is answered from a
+ * leaderboard of the {@value #LEADERBOARD_SIZE} most borrowed items. Borrow counts only grow, so an item can
+ * only join the leaderboard when it is appended or checked out, and a checkout below the leaderboard's lowest
+ * count does not touch it. Longer rankings scan the records.</p>
+ *
+ * <p>Appending holds the write lock of the catalog and search its read lock. Everything else may be called from
+ * several threads at once: copy state and borrow counts are updated by compare-and-set on the records, and
+ * pages never move once written. Digital versions are not stored.</p>
+ *
+ * <p>The catalog is a standalone store. {@link UniversityLibrary} keeps its catalog on the heap and does not
+ * use this class, and circulation through it covers copy state and borrow counts only: there are no members,
+ * loans, transactions, journal records or repair queue. Items move between the two by appending heap items
+ * and materializing records. Copy state follows the rules of the heap classes: only a checked-out copy can be
+ * returned, and a copy damaged more than five times is removed instead of repaired, as
+ * {@link Item#repair(Copy)} does.</p>
+ *
+ * @author mianm
+ */
+public class OffHeapCatalog {
+    /** The type code of a book. */
+    public static final int BOOK = 0;
+    /** The type code of a thesis. */
+    public static final int THESIS = 1;
+    /** The type code of a research paper. */
+    public static final int RESEARCH_PAPER = 2;
+
+    /** The field searched by {@link #search(int, String)}: the title. */
+    public static final int TITLE = 8;
+    /** The field searched by {@link #search(int, String)}: the author. */
+    public static final int AUTHOR = 16;
+    /** The field searched by {@link #search(int, String)}: the topic. */
+    public static final int TOPIC = 24;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int RECORD_SIZE = 64;
+    private static final int ID = 0;
+    private static final int EXTRA_1 = 32;
+    private static final int EXTRA_2 = 40;
+    private static final int PAGE_COUNT = 48;
+    private static final int BORROW_COUNT = 52;
+    private static final int FIRST_COPY = 56;
+    private static final int TYPE_AND_COPIES = 60;
+
+    private static final int COPY_SIZE = 16;
+    private static final int COPY_STATE = 0;
+    private static final int COPY_DAMAGE = 4;
+    private static final int COPY_ID = 8;
+    private static final int CHECKED_OUT = 0;
+    private static final int AVAILABLE = 1;
+    private static final int DAMAGED = 2;
+    private static final int REMOVED = 4;
+    private static final int RETURNING = 8;
+    private static final int MAX_REPAIRABLE_DAMAGE = 5;
+
+    private static final int LEADERBOARD_SIZE = 1024;
+    private static final int MIN_GRAM = 3;
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int ARENA_PAGE_SIZE = 1 << 20;
+    private static final long NULL = -1;
+
+    private volatile ByteBuffer[] recordPages;
+    private volatile ByteBuffer[] copyPages;
+    private volatile ByteBuffer[] arenaPages;
+    private int arenaPosition;
+    private int copyCount;
+    private volatile int[] idTable;
+    private volatile int size;
+    private final ReadWriteLock lock;
+    private final Map<Integer, IntList> postings;
+    private final TreeMap<Long, Integer> leaderboard;
+    private final Map<Integer, Long> leaderKeys;
+    private volatile int leaderThreshold;
+
+    /**
+     * Initializes a new, empty instance of the OffHeapCatalog class.
+     */
+    public OffHeapCatalog() {
+        this.recordPages = new ByteBuffer[0];
+        this.copyPages = new ByteBuffer[0];
+        this.arenaPages = new ByteBuffer[0];
+        this.arenaPosition = ARENA_PAGE_SIZE;
+        this.idTable = new int[1024];
+        Arrays.fill(idTable, -1);
+        this.lock = new ReentrantReadWriteLock();
+        this.postings = new HashMap<>();
+        this.leaderboard = new TreeMap<>();
+        this.leaderKeys = new HashMap<>();
+    }
+
+    /**
+     * Copies an item and its copies into the catalog.
+     * The item keeps its title, author, topic, page count, borrow count, type-specific fields and the ID,
+     * availability and damage of every created copy. Copies the item has not created yet are stored without
+     * an ID.
+     *
+     * @param item The item to store.
+     * @return The ordinal of the stored item, or -1 if an item with the same ID is already stored.
+     */
+    public int append(Item item) {
+        lock.writeLock().lock();
+        try {
+            return appendLocked(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies an item into the catalog while the write lock is held; the work behind {@link #append(Item)}.
+     *
+     * @param item The item to store.
+     * @return The ordinal of the stored item, or -1 if an item with the same ID is already stored.
+     */
+    private int appendLocked(Item item) {
+        if (find(item.getId()) >= 0) {
+            return -1;
+        }
+        int ordinal = size;
+        if ((ordinal >>> PAGE_BITS) == recordPages.length) {
+            recordPages = grow(recordPages, RECORD_SIZE);
+        }
+        ByteBuffer page = recordPages[ordinal >>> PAGE_BITS];
+        int base = (ordinal & PAGE_MASK) * RECORD_SIZE;
+
+        int type = BOOK;
+        long isbn = 0;
+        String extra1 = null;
+        String extra2 = null;
+        if (item instanceof Book) {
+            isbn = ((Book) item).getIsbnValue();
+        } else if (item instanceof Thesis) {
+            type = THESIS;
+            extra1 = ((Thesis) item).getDegree();
+            extra2 = ((Thesis) item).getUniversity();
+        } else if (item instanceof ResearchPaper) {
+            type = RESEARCH_PAPER;
+            extra1 = ((ResearchPaper) item).getDoi();
+            extra2 = ((ResearchPaper) item).getConference();
+        }
+
+        page.putLong(base + ID, putString(item.getId()));
+        page.putLong(base + TITLE, putString(item.getTitle()));
+        page.putLong(base + AUTHOR, putString(item.getAuthor()));
+        page.putLong(base + TOPIC, putString(item.getTopic()));
+        page.putLong(base + EXTRA_1, type == BOOK ? isbn : putString(extra1));
+        page.putLong(base + EXTRA_2, putString(extra2));
+        page.putInt(base + PAGE_COUNT, item.getPageCount());
+        page.putInt(base + BORROW_COUNT, item.getBorrowCount());
+        page.putInt(base + FIRST_COPY, copyCount);
+        List<Copy> created = item.getCreatedCopies();
+        int uncreated = item.getUncreatedCopyCount();
+        page.putInt(base + TYPE_AND_COPIES, type << 28 | (created.size() + uncreated));
+        for (Copy c : created) {
+            appendCopy(c);
+        }
+        for (int i = 0; i < uncreated; i++) {
+            appendCopy(null);
+        }
+
+        if (ordinal * 2 >= idTable.length) {
+            rehash(idTable.length * 2);
+        }
+        insertId(ordinal, item.getId());
+        indexGrams(ordinal, TITLE, item.getTitle());
+        indexGrams(ordinal, AUTHOR, item.getAuthor());
+        indexGrams(ordinal, TOPIC, item.getTopic());
+        size = ordinal + 1;
+        rank(ordinal);
+        return ordinal;
+    }
+
+    /**
+     * Retrieves the number of stored items.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the amount of direct memory held by the catalog.
+     *
+     * @return The number of bytes in all record, copy and string pages.
+     */
+    public long getOffHeapBytes() {
+        return (long) recordPages.length * RECORD_SIZE * (PAGE_MASK + 1)
+                + (long) copyPages.length * COPY_SIZE * (PAGE_MASK + 1)
+                + (long) arenaPages.length * ARENA_PAGE_SIZE;
+    }
+
+    /**
+     * Finds the ordinal of an item by its ID.
+     *
+     * @param id The ID of the item.
+     * @return The ordinal, or -1 if no item has the ID.
+     */
+    public int find(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int count = size;
+        int[] table = idTable;
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int ordinal = table[slot];
+            if (ordinal < 0) {
+                return -1;
+            }
+            if (ordinal < count && equalsString(record(ordinal).getLong(offset(ordinal) + ID), key)) {
+                return ordinal;
+            }
+        }
+    }
+
+    /**
+     * Finds every item whose field contains the query, ignoring the case of ASCII letters.
+     * Candidates come from the rarest trigram of the query and are confirmed in place as UTF-8; no strings are
+     * created. Queries shorter than three bytes scan every record.
+     *
+     * @param field {@link #TITLE}, {@link #AUTHOR} or {@link #TOPIC}.
+     * @param query The text to look for.
+     * @return The ordinals of the matching items, in increasing order.
+     */
+    public IntList search(int field, String query) {
+        byte[] needle = query.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        IntList result = new IntList();
+        lock.readLock().lock();
+        try {
+            int count = size;
+            if (needle.length < MIN_GRAM) {
+                for (int ordinal = 0; ordinal < count; ordinal++) {
+                    if (containsFolded(record(ordinal).getLong(offset(ordinal) + field), needle)) {
+                        result.add(ordinal);
+                    }
+                }
+                return result;
+            }
+            IntList rarest = null;
+            for (int start = 0; start + MIN_GRAM <= needle.length; start++) {
+                IntList list = postings.get(gramKey(field, needle, start));
+                if (list == null) {
+                    return result;
+                }
+                if (rarest == null || list.size() < rarest.size()) {
+                    rarest = list;
+                }
+            }
+            for (int i = 0; i < rarest.size(); i++) {
+                int ordinal = rarest.get(i);
+                if (containsFolded(record(ordinal).getLong(offset(ordinal) + field), needle)) {
+                    result.add(ordinal);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks out an available copy of an item and counts the borrow.
+     *
+     * @param ordinal The ordinal of the item.
+     * @return The index of the copy that was checked out, or -1 if no copy is available.
+     */
+    public int checkout(int ordinal) {
+        ByteBuffer page = record(ordinal);
+        int base = offset(ordinal);
+        int first = page.getInt(base + FIRST_COPY);
+        int copies = page.getInt(base + TYPE_AND_COPIES) & 0x0FFFFFFF;
+        for (int copy = first; copy < first + copies; copy++) {
+            ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+            int state = (copy & PAGE_MASK) * COPY_SIZE + COPY_STATE;
+            if ((int) INT.getVolatile(copyPage, state) == AVAILABLE
+                    && INT.compareAndSet(copyPage, state, AVAILABLE, CHECKED_OUT)) {
+                int borrows = (int) INT.getAndAdd(page, base + BORROW_COUNT, 1) + 1;
+                if (borrows >= leaderThreshold) {
+                    rank(ordinal);
+                }
+                return copy;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a checked-out copy.
+     * A damaged copy is counted as damaged again and stays out of circulation until it is repaired.
+     * A copy that is not checked out is left as it is, so a copy cannot be returned twice.
+     *
+     * @param copy    The index of the copy, as returned by {@link #checkout(int)}.
+     * @param damaged True if the copy came back damaged.
+     * @return True if the copy was checked out and has been returned.
+     */
+    public boolean checkin(int copy, boolean damaged) {
+        ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+        int base = (copy & PAGE_MASK) * COPY_SIZE;
+        if (!damaged) {
+            return INT.compareAndSet(copyPage, base + COPY_STATE, CHECKED_OUT, AVAILABLE);
+        }
+        if (!INT.compareAndSet(copyPage, base + COPY_STATE, CHECKED_OUT, RETURNING)) {
+            return false;
+        }
+        INT.getAndAdd(copyPage, base + COPY_DAMAGE, 1);
+        INT.setVolatile(copyPage, base + COPY_STATE, DAMAGED);
+        return true;
+    }
+
+    /**
+     * Repairs a damaged copy and puts it back into circulation.
+     * A copy that has been damaged more than five times is removed from the catalog instead.
+     *
+     * @param copy The index of the copy.
+     * @return True if the copy was damaged and has been repaired, false if it was not damaged or was removed.
+     */
+    public boolean repair(int copy) {
+        ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+        int base = (copy & PAGE_MASK) * COPY_SIZE;
+        if ((int) INT.getVolatile(copyPage, base + COPY_STATE) != DAMAGED) {
+            return false;
+        }
+        if ((int) INT.getVolatile(copyPage, base + COPY_DAMAGE) > MAX_REPAIRABLE_DAMAGE) {
+            INT.compareAndSet(copyPage, base + COPY_STATE, DAMAGED, REMOVED);
+            return false;
+        }
+        return INT.compareAndSet(copyPage, base + COPY_STATE, DAMAGED, AVAILABLE);
+    }
+
+    /**
+     * Finds the most borrowed items.
+     * Items with equal borrow counts are listed in ordinal order. Up to {@value #LEADERBOARD_SIZE} items are
+     * read from the leaderboard; longer rankings scan every record.
+     *
+     * @param limit The maximum number of items to return.
+     * @return The ordinals of up to {@code limit} items, most borrowed first.
+     */
+    public IntList mostPopular(int limit) {
+        if (limit <= LEADERBOARD_SIZE) {
+            synchronized (leaderboard) {
+                IntList result = new IntList(Math.max(0, Math.min(limit, leaderboard.size())));
+                Iterator<Integer> it = leaderboard.values().iterator();
+                while (result.size() < limit && it.hasNext()) {
+                    result.add(it.next());
+                }
+                return result;
+            }
+        }
+        int count = size;
+        int[] top = new int[Math.max(0, Math.min(limit, count))];
+        int[] counts = new int[top.length];
+        int filled = 0;
+        for (int ordinal = 0; ordinal < count && top.length > 0; ordinal++) {
+            int borrows = (int) INT.getVolatile(record(ordinal), offset(ordinal) + BORROW_COUNT);
+            if (filled == top.length && borrows <= counts[filled - 1]) {
+                continue;
+            }
+            int position = filled == top.length ? filled - 1 : filled++;
+            while (position > 0 && counts[position - 1] < borrows) {
+                top[position] = top[position - 1];
+                counts[position] = counts[position - 1];
+                position--;
+            }
+            top[position] = ordinal;
+            counts[position] = borrows;
+        }
+        IntList result = new IntList(filled);
+        for (int i = 0; i < filled; i++) {
+            result.add(top[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a cursor for reading items without materializing them.
+     *
+     * @return A new cursor, not yet positioned on an item.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Builds an ordinary item from a stored record, with copies in their stored state.
+     * Copies stored without an ID that are still available and undamaged stay uncreated in the item; the
+     * others get a new ID. The item is a copy; changes to it are not written back.
+     *
+     * @param ordinal The ordinal of the item.
+     * @return The item.
+     */
+    public Item materialize(int ordinal) {
+        ByteBuffer page = record(ordinal);
+        int base = offset(ordinal);
+        String id = getString(page.getLong(base + ID));
+        String title = getString(page.getLong(base + TITLE));
+        String author = getString(page.getLong(base + AUTHOR));
+        String topic = getString(page.getLong(base + TOPIC));
+        int pageCount = page.getInt(base + PAGE_COUNT);
+        int typeAndCopies = page.getInt(base + TYPE_AND_COPIES);
+        boolean book = typeAndCopies >>> 28 == BOOK;
+        String extra1 = book ? null : getString(page.getLong(base + EXTRA_1));
+        String extra2 = getString(page.getLong(base + EXTRA_2));
+
+        int first = page.getInt(base + FIRST_COPY);
+        int copies = typeAndCopies & 0x0FFFFFFF;
+        int untouched = 0;
+        for (int copy = first; copy < first + copies; copy++) {
+            if (isUntouched(copy)) {
+                untouched++;
+            }
+        }
+
+        Item item;
+        switch (typeAndCopies >>> 28) {
+            case THESIS:
+                item = new Thesis(extra1, extra2, id, title, author, pageCount, topic, untouched);
+                break;
+            case RESEARCH_PAPER:
+                item = new ResearchPaper(extra1, extra2, id, title, author, pageCount, topic, untouched);
+                break;
+            default:
+                item = new Book(page.getLong(base + EXTRA_1), id, title, author, pageCount, topic, untouched);
+        }
+        for (int copy = first; copy < first + copies; copy++) {
+            if (isUntouched(copy)) {
+                continue;
+            }
+            ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+            int copyBase = (copy & PAGE_MASK) * COPY_SIZE;
+            int state = (int) INT.getVolatile(copyPage, copyBase + COPY_STATE);
+            if (state == REMOVED) {
+                continue;
+            }
+            long copyId = copyPage.getLong(copyBase + COPY_ID);
+            Copy restored = copyId == 0 ? new Copy() : new Copy(copyId, true, false, 0);
+            restored.setDamageCount((int) INT.getVolatile(copyPage, copyBase + COPY_DAMAGE));
+            restored.setDamaged((state & DAMAGED) != 0);
+            restored.setAvailable((state & AVAILABLE) != 0);
+            item.addCopy(restored);
+        }
+        item.setBorrowCount((int) INT.getVolatile(page, base + BORROW_COUNT));
+        return item;
+    }
+
+    /**
+     * A reusable, movable view of one stored item.
+     * Numeric fields are read straight from the record; strings are only decoded when asked for.
+     */
+    public final class Cursor {
+        private ByteBuffer page;
+        private int base;
+        private int ordinal = -1;
+
+        /**
+         * Initializes a new instance of the Cursor class.
+         */
+        private Cursor() {
+        }
+
+        /**
+         * Positions the cursor on an item.
+         *
+         * @param ordinal The ordinal of the item.
+         * @return This cursor.
+         */
+        public Cursor moveTo(int ordinal) {
+            if (ordinal < 0 || ordinal >= size) {
+                throw new IndexOutOfBoundsException("Ordinal: " + ordinal + ", Size: " + size);
+            }
+            this.page = record(ordinal);
+            this.base = offset(ordinal);
+            this.ordinal = ordinal;
+            return this;
+        }
+
+        /**
+         * Retrieves the ordinal of the current item.
+         *
+         * @return The ordinal, or -1 if the cursor has not been positioned.
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        /**
+         * Retrieves the ID of the current item.
+         *
+         * @return The ID.
+         */
+        public String getId() {
+            return getString(page.getLong(base + ID));
+        }
+
+        /**
+         * Retrieves the title of the current item.
+         *
+         * @return The title.
+         */
+        public String getTitle() {
+            return getString(page.getLong(base + TITLE));
+        }
+
+        /**
+         * Retrieves the author of the current item.
+         *
+         * @return The author.
+         */
+        public String getAuthor() {
+            return getString(page.getLong(base + AUTHOR));
+        }
+
+        /**
+         * Retrieves the topic of the current item.
+         *
+         * @return The topic.
+         */
+        public String getTopic() {
+            return getString(page.getLong(base + TOPIC));
+        }
+
+        /**
+         * Retrieves the type of the current item.
+         *
+         * @return {@link #BOOK}, {@link #THESIS} or {@link #RESEARCH_PAPER}.
+         */
+        public int getType() {
+            return page.getInt(base + TYPE_AND_COPIES) >>> 28;
+        }
+
+        /**
+         * Retrieves the page count of the current item.
+         *
+         * @return The number of pages.
+         */
+        public int getPageCount() {
+            return page.getInt(base + PAGE_COUNT);
+        }
+
+        /**
+         * Retrieves the borrow count of the current item.
+         *
+         * @return The number of times the item has been borrowed.
+         */
+        public int getBorrowCount() {
+            return (int) INT.getVolatile(page, base + BORROW_COUNT);
+        }
+
+        /**
+         * Retrieves the number of copies of the current item, not counting copies removed after repairs.
+         *
+         * @return The number of copies.
+         */
+        public int getCopiesCount() {
+            int slots = page.getInt(base + TYPE_AND_COPIES) & 0x0FFFFFFF;
+            return slots - countCopies(REMOVED);
+        }
+
+        /**
+         * Counts the copies of the current item that can be borrowed.
+         *
+         * @return The number of available copies.
+         */
+        public int getAvailableCopyCount() {
+            return countCopies(AVAILABLE);
+        }
+
+        /**
+         * Counts the copies of the current item that are in one state.
+         *
+         * @param state The state.
+         * @return The number of copies in that state.
+         */
+        private int countCopies(int state) {
+            int first = page.getInt(base + FIRST_COPY);
+            int slots = page.getInt(base + TYPE_AND_COPIES) & 0x0FFFFFFF;
+            int count = 0;
+            for (int copy = first; copy < first + slots; copy++) {
+                ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+                if ((int) INT.getVolatile(copyPage, (copy & PAGE_MASK) * COPY_SIZE + COPY_STATE) == state) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Moves an item to the place of its current borrow count on the leaderboard, adding it if it ranks among the
+     * most borrowed items and dropping the lowest ranked item when the leaderboard is full.
+     *
+     * @param ordinal The ordinal of the item.
+     */
+    private void rank(int ordinal) {
+        synchronized (leaderboard) {
+            int borrows = (int) INT.getVolatile(record(ordinal), offset(ordinal) + BORROW_COUNT);
+            long key = ((long) (Integer.MAX_VALUE - borrows) << 32) | ordinal;
+            Long previous = leaderKeys.get(ordinal);
+            if (previous != null) {
+                leaderboard.remove(previous);
+            } else if (leaderboard.size() == LEADERBOARD_SIZE) {
+                if (key > leaderboard.lastKey()) {
+                    return;
+                }
+                leaderKeys.remove(leaderboard.pollLastEntry().getValue());
+            }
+            leaderboard.put(key, ordinal);
+            leaderKeys.put(ordinal, key);
+            if (leaderboard.size() == LEADERBOARD_SIZE) {
+                leaderThreshold = Integer.MAX_VALUE - (int) (leaderboard.lastKey() >>> 32);
+            }
+        }
+    }
+
+    /**
+     * Adds an item to the trigram posting lists of one field.
+     *
+     * @param ordinal The ordinal of the item.
+     * @param field   {@link #TITLE}, {@link #AUTHOR} or {@link #TOPIC}.
+     * @param value   The text of the field, or null.
+     */
+    private void indexGrams(int ordinal, int field, String value) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = fold(bytes[i]);
+        }
+        for (int start = 0; start + MIN_GRAM <= bytes.length; start++) {
+            IntList list = postings.computeIfAbsent(gramKey(field, bytes, start), k -> new IntList(2));
+            if (list.last() != ordinal) {
+                list.add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Packs a field and three folded bytes into the key of a posting list.
+     *
+     * @param field {@link #TITLE}, {@link #AUTHOR} or {@link #TOPIC}.
+     * @param bytes The folded bytes.
+     * @param start The first byte of the trigram.
+     * @return The key of the trigram.
+     */
+    private static int gramKey(int field, byte[] bytes, int start) {
+        return field << 24 | (bytes[start] & 0xFF) << 16 | (bytes[start + 1] & 0xFF) << 8
+                | (bytes[start + 2] & 0xFF);
+    }
+
+    /**
+     * Checks whether a copy was stored without an ID and is still available and undamaged.
+     *
+     * @param copy The index of the copy.
+     * @return True if the copy has never been created or touched.
+     */
+    private boolean isUntouched(int copy) {
+        ByteBuffer copyPage = copyPages[copy >>> PAGE_BITS];
+        int base = (copy & PAGE_MASK) * COPY_SIZE;
+        return copyPage.getLong(base + COPY_ID) == 0
+                && (int) INT.getVolatile(copyPage, base + COPY_STATE) == AVAILABLE
+                && (int) INT.getVolatile(copyPage, base + COPY_DAMAGE) == 0;
+    }
+
+    /**
+     * Writes the state of a copy into the next copy slot.
+     *
+     * @param c The copy, or null for a copy the item has not created yet.
+     */
+    private void appendCopy(Copy c) {
+        int copy = copyCount;
+        if ((copy >>> PAGE_BITS) == copyPages.length) {
+            copyPages = grow(copyPages, COPY_SIZE);
+        }
+        ByteBuffer page = copyPages[copy >>> PAGE_BITS];
+        int base = (copy & PAGE_MASK) * COPY_SIZE;
+        if (c == null) {
+            page.putInt(base + COPY_STATE, AVAILABLE);
+            page.putInt(base + COPY_DAMAGE, 0);
+            page.putLong(base + COPY_ID, 0);
+        } else {
+            page.putInt(base + COPY_STATE, c.getDamaged() ? DAMAGED : c.getAvailable() ? AVAILABLE : CHECKED_OUT);
+            page.putInt(base + COPY_DAMAGE, c.getDamageCount());
+            page.putLong(base + COPY_ID, c.getCopyIdValue());
+        }
+        copyCount = copy + 1;
+    }
+
+    /**
+     * Adds a page to a page table.
+     *
+     * @param pages    The page table.
+     * @param slotSize The size of one slot of the page.
+     * @return A new page table with one more page.
+     */
+    private static ByteBuffer[] grow(ByteBuffer[] pages, int slotSize) {
+        ByteBuffer[] grown = Arrays.copyOf(pages, pages.length + 1);
+        grown[pages.length] = ByteBuffer.allocateDirect(slotSize << PAGE_BITS).order(ByteOrder.nativeOrder());
+        return grown;
+    }
+
+    /**
+     * Writes a string into the arena.
+     *
+     * @param value The string, or null.
+     * @return The reference of the stored string, or {@link #NULL}.
+     */
+    private long putString(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + 4 > ARENA_PAGE_SIZE) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to store");
+        }
+        if (arenaPosition + 4 + bytes.length > ARENA_PAGE_SIZE) {
+            ByteBuffer[] grown = Arrays.copyOf(arenaPages, arenaPages.length + 1);
+            grown[arenaPages.length] = ByteBuffer.allocateDirect(ARENA_PAGE_SIZE).order(ByteOrder.nativeOrder());
+            arenaPages = grown;
+            arenaPosition = 0;
+        }
+        ByteBuffer page = arenaPages[arenaPages.length - 1];
+        long ref = (long) (arenaPages.length - 1) * ARENA_PAGE_SIZE + arenaPosition;
+        page.putInt(arenaPosition, bytes.length);
+        page.put(arenaPosition + 4, bytes);
+        arenaPosition += 4 + bytes.length;
+        return ref;
+    }
+
+    /**
+     * Decodes a string from the arena.
+     *
+     * @param ref The reference of the string.
+     * @return The string, or null for {@link #NULL}.
+     */
+    private String getString(long ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        ByteBuffer page = arenaPages[(int) (ref / ARENA_PAGE_SIZE)];
+        int position = (int) (ref % ARENA_PAGE_SIZE);
+        byte[] bytes = new byte[page.getInt(position)];
+        page.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a stored string with UTF-8 bytes.
+     *
+     * @param ref   The reference of the stored string.
+     * @param bytes The bytes to compare with.
+     * @return True if the stored string has exactly these bytes.
+     */
+    private boolean equalsString(long ref, byte[] bytes) {
+        ByteBuffer page = arenaPages[(int) (ref / ARENA_PAGE_SIZE)];
+        int position = (int) (ref % ARENA_PAGE_SIZE);
+        if (page.getInt(position) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (page.get(position + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a stored string contains lower-cased UTF-8 bytes, folding ASCII capitals as it goes.
+     *
+     * @param ref    The reference of the stored string.
+     * @param needle The lower-cased bytes to look for.
+     * @return True if the string contains the bytes.
+     */
+    private boolean containsFolded(long ref, byte[] needle) {
+        if (ref == NULL) {
+            return needle.length == 0;
+        }
+        ByteBuffer page = arenaPages[(int) (ref / ARENA_PAGE_SIZE)];
+        int start = (int) (ref % ARENA_PAGE_SIZE) + 4;
+        int last = start + page.getInt(start - 4) - needle.length;
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < needle.length && fold(page.get(i + j)) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lower-cases an ASCII capital letter.
+     *
+     * @param b The byte.
+     * @return The byte, lower-cased if it is an ASCII capital.
+     */
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Adds an ordinal to the ID table.
+     *
+     * @param ordinal The ordinal.
+     * @param id      The ID of the item.
+     */
+    private void insertId(int ordinal, String id) {
+        int mask = idTable.length - 1;
+        int slot = hash(id.getBytes(StandardCharsets.UTF_8)) & mask;
+        while (idTable[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        idTable[slot] = ordinal;
+    }
+
+    /**
+     * Rebuilds the ID table with a new capacity.
+     * The new table is only published once it is complete, so concurrent lookups see either table.
+     *
+     * @param capacity The new capacity, a power of two.
+     */
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int mask = capacity - 1;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            long ref = record(ordinal).getLong(offset(ordinal) + ID);
+            int slot = hash(getString(ref).getBytes(StandardCharsets.UTF_8)) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = ordinal;
+        }
+        idTable = table;
+    }
+
+    /**
+     * Hashes UTF-8 bytes for the ID table.
+     *
+     * @param bytes The bytes.
+     * @return The hash.
+     */
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Retrieves the record page of an item.
+     *
+     * @param ordinal The ordinal of the item.
+     * @return The page.
+     */
+    private ByteBuffer record(int ordinal) {
+        return recordPages[ordinal >>> PAGE_BITS];
+    }
+
+    /**
+     * Retrieves the position of an item's record within its page.
+     *
+     * @param ordinal The ordinal of the item.
+     * @return The byte offset of the record.
+     */
+    private static int offset(int ordinal) {
+        return (ordinal & PAGE_MASK) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,89 @@
+package library;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a paginated listing or search, with a continuation token for the next page.
+ *
+ * <p>Tokens are opaque to callers. They hold the catalog position to resume from, and items and members keep
+ * their positions for as long as they are catalogued, so a token stays valid while the catalog grows: the next
+ * page continues after the last result and picks up entries added since.</p>
+ *
+ * @param <T> The type of the entries.
+ * @author mianm
+ */
+public final class Page<T> {
+    private final List<T> entries;
+    private final String nextToken;
+
+    /**
+     * Initializes a new instance of the Page class.
+     *
+     * @param entries   The entries on the page.
+     * @param nextToken The token of the next page, or null if this is the last page.
+     */
+    Page(List<T> entries, String nextToken) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Retrieves the entries on the page.
+     *
+     * @return A read-only list of the entries, in catalog order.
+     */
+    public List<T> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Retrieves the token to pass to get the next page.
+     *
+     * @return The token, or null if this is the last page.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Checks whether there is a page after this one.
+     *
+     * @return True if more entries follow.
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    /**
+     * Encodes the catalog position of the next page as a token.
+     *
+     * @param position The position of the first entry of the next page.
+     * @return The token.
+     */
+    static String token(int position) {
+        return Integer.toString(position, Character.MAX_RADIX);
+    }
+
+    /**
+     * Decodes the catalog position from a token.
+     *
+     * @param token The token, or null for the first page.
+     * @return The position of the first entry of the page.
+     * @throws IllegalArgumentException If the token was not produced by a page.
+     */
+    static int position(String token) {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+        try {
+            int position = Integer.parseInt(token, Character.MAX_RADIX);
+            if (position >= 0) {
+                return position;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid page token: " + token);
+    }
+}
@@ -0,0 +1,100 @@
+package library;
+
+import library.items.Item;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps the items of the catalog ordered by how many times they have been borrowed.
+ * Items with the same borrow count are ordered by their catalog ordinal, so the item that was added first
+ * ranks higher.
+ * 
+ * <p>Each item has one entry keyed by its borrow count and ordinal. A borrow moves that single entry, so
+ * updates cost O(log n) and reading the top K items costs O(K + log n).</p>
+ * 
+ * <p>A concurrent ranking can be updated for different items and read from several threads at once.
+ * Updates for one item must not overlap; the library guarantees this by updating under the item's lock.</p>
+ * 
+ * @author mianm
+ */
+public class PopularityRanking {
+    private final NavigableMap<Long, Item> ranking;
+
+    /**
+     * Initializes a new, empty instance of the PopularityRanking class.
+     */
+    public PopularityRanking() {
+        this(false);
+    }
+
+    /**
+     * Initializes a new, empty instance of the PopularityRanking class.
+     *
+     * @param concurrent True if the ranking is updated and read from several threads.
+     */
+    public PopularityRanking(boolean concurrent) {
+        this.ranking = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+    }
+
+    /**
+     * Adds a catalogued item to the ranking at its current borrow count.
+     *
+     * @param item The item to add.
+     */
+    public void add(Item item) {
+        ranking.put(key(item.getBorrowCount(), item.getOrdinal()), item);
+    }
+
+    /**
+     * Moves an item to the position of its new borrow count.
+     *
+     * @param item          The item whose borrow count changed.
+     * @param previousCount The borrow count the item was ranked under.
+     */
+    public void update(Item item, int previousCount) {
+        if (ranking.remove(key(previousCount, item.getOrdinal())) != null) {
+            ranking.put(key(item.getBorrowCount(), item.getOrdinal()), item);
+        }
+    }
+
+    /**
+     * Retrieves the highest ranked items.
+     *
+     * @param limit The maximum number of items to return.
+     * @return Up to {@code limit} items, most borrowed first.
+     */
+    public List<Item> top(int limit) {
+        List<Item> result = new ArrayList<>(Math.max(0, Math.min(limit, ranking.size())));
+        Iterator<Item> it = ranking.values().iterator();
+        while (result.size() < limit && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the highest ranked item.
+     *
+     * @return The most borrowed item, or null if the ranking is empty.
+     */
+    public Item first() {
+        Map.Entry<Long, Item> first = ranking.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    /**
+     * Builds the ranking key of an item; higher borrow counts produce smaller keys.
+     *
+     * @param borrowCount The borrow count of the item.
+     * @param ordinal     The catalog ordinal of the item.
+     * @return The ranking key.
+     */
+    private static long key(int borrowCount, int ordinal) {
+        return ((Integer.MAX_VALUE - (long) borrowCount) << 31) | ordinal;
+    }
+}
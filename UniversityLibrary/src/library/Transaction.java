@@ -6,12 +6,13 @@ import library.members.Member;
 
 /**
  * Represents a transaction in the library system, such as borrowing or returning an item.
- * Each transaction is associated with a member and an item.
+ * Each transaction is associated with a member and an item, and is identified by a 64-bit ID from a
+ * {@link TransactionIdGenerator}.
  * 
  * @author mianm
  */
 public class Transaction {
-    private final String trascationId;
+    private final long id;
     private final String trascationType;
     private final Date date;
     private final Member member;
@@ -20,14 +21,14 @@ public class Transaction {
     /**
      * Initializes a new instance of the Transaction class.
      *
-     * @param trascationId   The unique ID of the transaction.
+     * @param id             The unique ID of the transaction.
      * @param trascationType The type of the transaction (e.g., "Borrow", "Return").
      * @param date           The date of the transaction.
      * @param member         The member involved in the transaction.
      * @param item           The item involved in the transaction.
      */
-    public Transaction(String trascationId, String trascationType, Date date, Member member, Item item) {
-        this.trascationId = trascationId;
+    public Transaction(long id, String trascationType, Date date, Member member, Item item) {
+        this.id = id;
         this.trascationType = trascationType;
         this.date = date;
         this.member = member;
@@ -39,8 +40,17 @@ public class Transaction {
      *
      * @return The transaction ID.
      */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the transaction ID as it is shown to library staff.
+     *
+     * @return The transaction ID with a "TX" prefix.
+     */
     public String getTrascationId() {
-        return trascationId;
+        return "TX" + id;
     }
 
     /**
@@ -87,7 +97,7 @@ public class Transaction {
     @Override
     public String toString() {
         return "Transaction{" +
-                "trascationId='" + trascationId + '\'' +
+                "trascationId='" + getTrascationId() + '\'' +
                 ", trascationType='" + trascationType + '\'' +
                 ", date=" + date +
                 ", member=" + member +
@@ -0,0 +1,380 @@
+package library;
+
+import library.items.Item;
+import library.members.Member;
+import library.util.IntList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Stores the transaction history of the library in primitive columns instead of one object per transaction.
+ * Every row holds the transaction ID, the time in epoch milliseconds, a type code and the ordinals of the
+ * member and the item, which is about 30 bytes per transaction.
+ *
+ * <p>Rows are numbered in the order they were recorded. Besides the columns the history keeps the rows in
+ * time order, so a time range is found with two binary searches, and the rows of every member and every item,
+ * so their histories are read without scanning. Transactions recorded slightly out of time order, such as
+ * by two circulation desks at once, are moved into place from the end of the time order.</p>
+ *
+ * <p>{@link Transaction} objects are only built when a row is read through one of the list views.</p>
+ *
+ * <p>All methods may be called from several threads; they synchronize on the history.</p>
+ *
+ * @author mianm
+ */
+public class TransactionHistory {
+    /** The type code of a borrow. */
+    public static final byte BORROW = 0;
+    /** The type code of a return. */
+    public static final byte RETURN = 1;
+
+    private static final IntList NO_ROWS = new IntList(1);
+
+    private final IntFunction<Member> members;
+    private final IntFunction<Item> items;
+    private long[] ids;
+    private long[] timestamps;
+    private byte[] types;
+    private int[] memberOrdinals;
+    private int[] itemOrdinals;
+    private int[] byTime;
+    private IntList[] memberRows;
+    private IntList[] itemRows;
+    private int size;
+
+    /**
+     * Initializes a new, empty instance of the TransactionHistory class.
+     *
+     * @param members Looks up a member by ordinal when a transaction is built.
+     * @param items   Looks up an item by ordinal when a transaction is built.
+     */
+    public TransactionHistory(IntFunction<Member> members, IntFunction<Item> items) {
+        this.members = members;
+        this.items = items;
+        this.ids = new long[64];
+        this.timestamps = new long[64];
+        this.types = new byte[64];
+        this.memberOrdinals = new int[64];
+        this.itemOrdinals = new int[64];
+        this.byTime = new int[64];
+        this.memberRows = new IntList[16];
+        this.itemRows = new IntList[16];
+        this.size = 0;
+    }
+
+    /**
+     * Records a transaction.
+     *
+     * @param id             The ID of the transaction.
+     * @param type           {@link #BORROW} or {@link #RETURN}.
+     * @param timestamp      The time of the transaction in epoch milliseconds.
+     * @param memberOrdinal  The ordinal of the member, or -1 if the member is unknown.
+     * @param itemOrdinal    The ordinal of the item, or -1 if the item is unknown.
+     */
+    public synchronized void append(long id, byte type, long timestamp, int memberOrdinal, int itemOrdinal) {
+        if (size == ids.length) {
+            grow();
+        }
+        int row = size;
+        ids[row] = id;
+        timestamps[row] = timestamp;
+        types[row] = type;
+        memberOrdinals[row] = memberOrdinal;
+        itemOrdinals[row] = itemOrdinal;
+
+        int position = row;
+        while (position > 0 && timestamps[byTime[position - 1]] > timestamp) {
+            byTime[position] = byTime[position - 1];
+            position--;
+        }
+        byTime[position] = row;
+
+        if (memberOrdinal >= 0) {
+            memberRows = index(memberRows, memberOrdinal, row);
+        }
+        if (itemOrdinal >= 0) {
+            itemRows = index(itemRows, itemOrdinal, row);
+        }
+        size++;
+    }
+
+    /**
+     * Records a group of transactions that happened at the same time under a single lock acquisition.
+     *
+     * @param timestamp      The time of the transactions in epoch milliseconds.
+     * @param ids            The IDs of the transactions.
+     * @param types          The type codes of the transactions.
+     * @param memberOrdinals The ordinals of the members.
+     * @param itemOrdinals   The ordinals of the items.
+     * @param count          The number of transactions in the arrays.
+     */
+    public synchronized void appendAll(long timestamp, long[] ids, byte[] types, int[] memberOrdinals,
+            int[] itemOrdinals, int count) {
+        for (int i = 0; i < count; i++) {
+            append(ids[i], types[i], timestamp, memberOrdinals[i], itemOrdinals[i]);
+        }
+    }
+
+    /**
+     * Retrieves the number of recorded transactions.
+     *
+     * @return The number of transactions.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the rows of the transactions within a time range.
+     *
+     * @param from The start of the range in epoch milliseconds, inclusive.
+     * @param to   The end of the range in epoch milliseconds, exclusive.
+     * @return The rows, in time order.
+     */
+    public synchronized IntList rowsBetween(long from, long to) {
+        int start = firstAtOrAfter(from);
+        int end = Math.max(start, firstAtOrAfter(to));
+        IntList rows = new IntList(end - start);
+        for (int i = start; i < end; i++) {
+            rows.add(byTime[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Finds the rows of the transactions of a member.
+     *
+     * @param memberOrdinal The ordinal of the member.
+     * @return The rows, in the order they were recorded.
+     */
+    public synchronized IntList rowsOfMember(int memberOrdinal) {
+        return copy(memberRows, memberOrdinal);
+    }
+
+    /**
+     * Finds the rows of the transactions of an item.
+     *
+     * @param itemOrdinal The ordinal of the item.
+     * @return The rows, in the order they were recorded.
+     */
+    public synchronized IntList rowsOfItem(int itemOrdinal) {
+        return copy(itemRows, itemOrdinal);
+    }
+
+    /**
+     * Retrieves the ID of a transaction.
+     *
+     * @param row The row of the transaction.
+     * @return The transaction ID.
+     */
+    public synchronized long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * Retrieves the time of a transaction.
+     *
+     * @param row The row of the transaction.
+     * @return The time in epoch milliseconds.
+     */
+    public synchronized long getTimestamp(int row) {
+        checkRow(row);
+        return timestamps[row];
+    }
+
+    /**
+     * Retrieves the type code of a transaction.
+     *
+     * @param row The row of the transaction.
+     * @return {@link #BORROW} or {@link #RETURN}.
+     */
+    public synchronized byte getType(int row) {
+        checkRow(row);
+        return types[row];
+    }
+
+    /**
+     * Retrieves the member ordinal of a transaction.
+     *
+     * @param row The row of the transaction.
+     * @return The member ordinal, or -1 if the member was unknown.
+     */
+    public synchronized int getMemberOrdinal(int row) {
+        checkRow(row);
+        return memberOrdinals[row];
+    }
+
+    /**
+     * Retrieves the item ordinal of a transaction.
+     *
+     * @param row The row of the transaction.
+     * @return The item ordinal, or -1 if the item was unknown.
+     */
+    public synchronized int getItemOrdinal(int row) {
+        checkRow(row);
+        return itemOrdinals[row];
+    }
+
+    /**
+     * Builds the transaction object of a row.
+     *
+     * @param row The row of the transaction.
+     * @return The transaction.
+     */
+    public Transaction get(int row) {
+        long id;
+        long timestamp;
+        byte type;
+        int member;
+        int item;
+        synchronized (this) {
+            checkRow(row);
+            id = ids[row];
+            timestamp = timestamps[row];
+            type = types[row];
+            member = memberOrdinals[row];
+            item = itemOrdinals[row];
+        }
+        return new Transaction(id, typeName(type), new Date(timestamp),
+                member < 0 ? null : members.apply(member), item < 0 ? null : items.apply(item));
+    }
+
+    /**
+     * Provides a read-only view of every transaction in the order they were recorded.
+     * The view grows as transactions are recorded; each element is built when it is read.
+     *
+     * @return The view.
+     */
+    public List<Transaction> asList() {
+        return new AbstractList<Transaction>() {
+            @Override
+            public Transaction get(int index) {
+                return TransactionHistory.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return TransactionHistory.this.size();
+            }
+        };
+    }
+
+    /**
+     * Provides a read-only view of a fixed set of rows; each element is built when it is read.
+     *
+     * @param rows The rows, as returned by one of the queries.
+     * @return The view.
+     */
+    public List<Transaction> view(IntList rows) {
+        return new AbstractList<Transaction>() {
+            @Override
+            public Transaction get(int index) {
+                if (index < 0 || index >= rows.size()) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rows.size());
+                }
+                return TransactionHistory.this.get(rows.get(index));
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        };
+    }
+
+    /**
+     * Retrieves the name of a type code as used by {@link Transaction}.
+     *
+     * @param type The type code.
+     * @return "Borrow" or "Return".
+     */
+    public static String typeName(byte type) {
+        return type == BORROW ? "Borrow" : "Return";
+    }
+
+    /**
+     * Finds the first position in time order whose transaction is not earlier than a time.
+     *
+     * @param timestamp The time in epoch milliseconds.
+     * @return The position, or the number of transactions if all are earlier.
+     */
+    private int firstAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[byTime[middle]] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds a row to the posting list of an ordinal, growing the table if needed.
+     *
+     * @param table   The posting lists by ordinal.
+     * @param ordinal The ordinal.
+     * @param row     The row to add.
+     * @return The table, which may have been replaced by a larger one.
+     */
+    private static IntList[] index(IntList[] table, int ordinal, int row) {
+        if (ordinal >= table.length) {
+            table = Arrays.copyOf(table, Math.max(ordinal + 1, table.length * 2));
+        }
+        if (table[ordinal] == null) {
+            table[ordinal] = new IntList();
+        }
+        table[ordinal].add(row);
+        return table;
+    }
+
+    /**
+     * Copies the posting list of an ordinal.
+     *
+     * @param table   The posting lists by ordinal.
+     * @param ordinal The ordinal.
+     * @return A copy of the posting list, empty if there is none.
+     */
+    private static IntList copy(IntList[] table, int ordinal) {
+        IntList rows = ordinal >= 0 && ordinal < table.length ? table[ordinal] : null;
+        if (rows == null) {
+            rows = NO_ROWS;
+        }
+        IntList result = new IntList(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            result.add(rows.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Checks that a row exists.
+     *
+     * @param row The row.
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Grows every column by half.
+     */
+    private void grow() {
+        int capacity = size + (size >> 1) + 1;
+        ids = Arrays.copyOf(ids, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        types = Arrays.copyOf(types, capacity);
+        memberOrdinals = Arrays.copyOf(memberOrdinals, capacity);
+        itemOrdinals = Arrays.copyOf(itemOrdinals, capacity);
+        byTime = Arrays.copyOf(byTime, capacity);
+    }
+}
@@ -0,0 +1,455 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of circulation activity, written ahead of the in-memory state of the library.
+ * Every borrow, return and repair decision is appended as a compact binary record, so the state of members,
+ * items and copies can be rebuilt after a restart by replaying the journal over the loaded catalog.
+ *
+ * <p>The segment file starts with a magic number and a format version. Each record is stored as its
+ * payload length, a CRC32 of the payload, and the payload itself: the record type, the time in epoch
+ * milliseconds, the transaction ID, the member ID, the item ID and a flag byte. Repair records carry the
+ * number of the repaired copy within its item in place of the member ID. A record that is cut short or fails its
+ * checksum marks the end of the journal; it is truncated away when the journal is opened.</p>
+ *
+ * <p>Writing a record and forcing it are separate steps. The library stages the record of an operation under
+ * its stripe locks before it changes any state, and forces it after the locks are released. Every force covers
+ * all records staged before it started, so circulation desks that commit at the same time share one force
+ * instead of queueing behind each other.</p>
+ *
+ * <p>Once a force has failed, the journal can no longer tell which records reached the storage device. The
+ * failure is kept, whether it happened on a committing thread or on the group commit thread, and every later
+ * commit, sync and close throws it again, so no caller goes on believing its records are durable.</p>
+ *
+ * @author mianm
+ */
+public class TransactionJournal implements Closeable {
+
+    /**
+     * Controls when appended records are forced to the storage device.
+     */
+    public enum FsyncPolicy {
+        /** Every record is forced before the operation completes. */
+        PER_OPERATION,
+        /** Records are forced together by a background thread at a fixed interval. */
+        GROUP_COMMIT,
+        /** Records are left to the operating system to write back. */
+        OS_MANAGED
+    }
+
+    static final byte BORROW = 1;
+    static final byte RETURN = 2;
+    static final byte REPAIR = 3;
+
+    private static final int MAGIC = 0x554C4A4E;
+    private static final short VERSION = 3;
+    private static final int HEADER_SIZE = 6;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final CRC32 crc;
+    private final ScheduledExecutorService flusher;
+    private final long groupCommitMillis;
+    private final Object forceLock;
+    private ByteBuffer buffer;
+    private long validSize;
+    private long recordCount;
+    private boolean flusherStarted;
+    private volatile long durableSize;
+    private volatile IOException forceFailure;
+
+    /**
+     * Opens a journal segment file, creating it if it does not exist.
+     * A damaged tail left by a crash is truncated. Under {@link FsyncPolicy#GROUP_COMMIT} the group commit
+     * thread is started with the first staged record.
+     *
+     * @param file              The segment file.
+     * @param policy            When records are forced to the storage device.
+     * @param groupCommitMillis The interval between forces for {@link FsyncPolicy#GROUP_COMMIT}.
+     * @throws IOException If the file cannot be opened or is not a journal.
+     */
+    public TransactionJournal(Path file, FsyncPolicy policy, long groupCommitMillis) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.policy = policy;
+        this.groupCommitMillis = groupCommitMillis;
+        this.crc = new CRC32();
+        this.forceLock = new Object();
+        this.buffer = ByteBuffer.allocate(256);
+        try {
+            recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (policy == FsyncPolicy.GROUP_COMMIT) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-group-commit");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens a journal segment file that forces every record before the operation completes.
+     *
+     * @param file The segment file.
+     * @throws IOException If the file cannot be opened or is not a journal.
+     */
+    public TransactionJournal(Path file) throws IOException {
+        this(file, FsyncPolicy.PER_OPERATION, 0);
+    }
+
+    /**
+     * Appends a record to the journal and forces it if the fsync policy asks for it.
+     *
+     * @param type      The record type.
+     * @param timestamp The time of the operation in epoch milliseconds.
+     * @param id        The ID of the transaction, or 0 for repair records.
+     * @param memberId  The ID of the member, or the number of the copy for repair records.
+     * @param itemId    The ID of the item.
+     * @param flag      The damaged flag of a return, or the archived flag of a repair.
+     */
+    void append(byte type, long timestamp, long id, String memberId, String itemId, boolean flag) {
+        commit(stage(type, timestamp, id, memberId, itemId, flag));
+    }
+
+    /**
+     * Writes a record to the journal without forcing it.
+     * Staged records are made durable by {@link #commit(long)}, alone or together with other records.
+     *
+     * @param type      The record type.
+     * @param timestamp The time of the operation in epoch milliseconds.
+     * @param id        The ID of the transaction, or 0 for repair records.
+     * @param memberId  The ID of the member, or the number of the copy for repair records.
+     * @param itemId    The ID of the item.
+     * @param flag      The damaged flag of a return, or the archived flag of a repair.
+     * @return The size of the journal after the record, to pass to {@link #commit(long)}.
+     * @throws UncheckedIOException If the record cannot be written; the journal is left as it was.
+     */
+    synchronized long stage(byte type, long timestamp, long id, String memberId, String itemId, boolean flag) {
+        byte[] member = memberId == null ? new byte[0] : memberId.getBytes(StandardCharsets.UTF_8);
+        byte[] item = itemId.getBytes(StandardCharsets.UTF_8);
+        int payload = 1 + 8 + 8 + 2 + member.length + 2 + item.length + 1;
+        if (buffer.capacity() < RECORD_HEADER_SIZE + payload) {
+            buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload);
+        }
+        buffer.clear();
+        buffer.putInt(payload);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(timestamp);
+        buffer.putLong(id);
+        buffer.putShort((short) member.length);
+        buffer.put(member);
+        buffer.putShort((short) item.length);
+        buffer.put(item);
+        buffer.put((byte) (flag ? 1 : 0));
+        crc.reset();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, payload);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+
+        long position = validSize;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(validSize);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Could not append to the transaction journal", e);
+        }
+        validSize = position;
+        recordCount++;
+        if (flusher != null && !flusherStarted) {
+            flusherStarted = true;
+            flusher.scheduleWithFixedDelay(this::groupCommit, groupCommitMillis, groupCommitMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return position;
+    }
+
+    /**
+     * Makes every record staged so far durable according to the fsync policy.
+     */
+    void commit() {
+        commit(getSize());
+    }
+
+    /**
+     * Makes the records up to a given journal size durable according to the fsync policy.
+     * Under {@link FsyncPolicy#PER_OPERATION} they are forced before this returns, by this thread or by a
+     * force another thread has started since; otherwise they are left to the group commit thread or the
+     * operating system.
+     *
+     * @param position The journal size returned by {@link #stage} for the last record to make durable.
+     * @throws UncheckedIOException If the records cannot be forced, or an earlier force has failed.
+     */
+    void commit(long position) {
+        try {
+            if (policy == FsyncPolicy.PER_OPERATION) {
+                force(position);
+            } else {
+                checkForced();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not force the transaction journal", e);
+        }
+    }
+
+    /**
+     * Replays every record of the journal into a library whose catalog and members are already loaded.
+     * Records that refer to unknown members or items are skipped.
+     *
+     * @param library The library to rebuild.
+     * @return The number of records replayed.
+     * @throws IOException If the journal cannot be read.
+     */
+    public synchronized long replay(UniversityLibrary library) throws IOException {
+        long replayed = 0;
+        long position = HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position < validSize) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            payload.flip();
+
+            byte type = payload.get();
+            long timestamp = payload.getLong();
+            long id = payload.getLong();
+            String memberId = readString(payload);
+            String itemId = readString(payload);
+            boolean flag = payload.get() != 0;
+            if (library.applyJournalRecord(type, timestamp, id, memberId, itemId, flag)) {
+                replayed++;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return replayed;
+    }
+
+    /**
+     * Forces every appended record to the storage device.
+     *
+     * @throws IOException If the force fails, or an earlier force has failed.
+     */
+    public void sync() throws IOException {
+        force(getSize());
+    }
+
+    /**
+     * Forces the journal unless a force that covers the given size has already completed.
+     * Threads that wait here while another thread forces find their records covered and return at once.
+     *
+     * @param position The journal size that must be durable.
+     * @throws IOException If the force fails, or an earlier force has failed.
+     */
+    private void force(long position) throws IOException {
+        checkForced();
+        if (durableSize >= position) {
+            return;
+        }
+        synchronized (forceLock) {
+            checkForced();
+            if (durableSize >= position) {
+                return;
+            }
+            long target = getSize();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                forceFailure = e;
+                throw e;
+            }
+            durableSize = target;
+        }
+    }
+
+    /**
+     * Throws the failure of an earlier force, if there was one.
+     *
+     * @throws IOException The failure of the first force that failed.
+     */
+    private void checkForced() throws IOException {
+        IOException failure = forceFailure;
+        if (failure != null) {
+            throw new IOException("An earlier force of the transaction journal failed", failure);
+        }
+    }
+
+    /**
+     * Retrieves the size of the journal including every staged record.
+     *
+     * @return The size in bytes.
+     */
+    private synchronized long getSize() {
+        return validSize;
+    }
+
+    /**
+     * Retrieves the number of records in the journal.
+     *
+     * @return The number of records.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Retrieves the fsync policy of the journal.
+     *
+     * @return The fsync policy.
+     */
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Forces any outstanding records and closes the segment file.
+     * The file is closed even if the force fails.
+     *
+     * @throws IOException If the final force or the close fails, or an earlier force has failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            try {
+                if (policy != FsyncPolicy.OS_MANAGED) {
+                    force(validSize);
+                } else {
+                    checkForced();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Forces the records appended since the last group commit.
+     * A failure is kept and thrown by the next commit, sync or close.
+     */
+    private void groupCommit() {
+        try {
+            sync();
+        } catch (IOException e) {
+            // kept in forceFailure for the callers
+        }
+    }
+
+    /**
+     * Validates the segment file, writing the header of a new file and cutting off a damaged tail.
+     *
+     * @throws IOException If the file cannot be read or is not a journal.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            validSize = HEADER_SIZE;
+            durableSize = validSize;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size < HEADER_SIZE || !readFully(header, 0) || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a transaction journal");
+        }
+        if (header.getShort(4) != VERSION) {
+            throw new IOException("Unsupported journal version " + header.getShort(4));
+        }
+
+        long position = HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int length = recordHeader.getInt(0);
+            if (length <= 0 || length > MAX_PAYLOAD || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != recordHeader.getInt(4)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            recordCount++;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        validSize = position;
+        durableSize = position;
+    }
+
+    /**
+     * Reads bytes from the segment file until the buffer is full or the file ends.
+     *
+     * @param target   The buffer to fill.
+     * @param position The file position to read from.
+     * @return True if the buffer was filled, false if the file ended first.
+     * @throws IOException If the read fails.
+     */
+    private boolean readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string from a record payload.
+     *
+     * @param payload The payload positioned at the string.
+     * @return The string, or null if it is empty.
+     */
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getShort() & 0xFFFF;
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+}
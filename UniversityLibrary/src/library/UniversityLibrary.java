@@ -1,49 +1,289 @@
 package library;
 
+import library.items.Copy;
+import library.items.DigitalItem;
 import library.items.Item;
+import library.items.ItemListener;
+import library.members.BorrowHistory;
 import library.members.Member;
 import library.members.RepairSection;
+import library.util.IntList;
+import library.util.MetricsRegistry;
+import library.util.StripedLock;
+import library.util.SymbolTable;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents the University Library system that manages items, members, transactions, and repairs.
  * Handles borrowing and returning of items, repair requests, and tracks the most popular or viewed items.
+ * 
+ * <p>A library created in concurrent mode can serve several circulation desks from one JVM. Circulation
+ * locks the member first and then the item, each on its own set of lock stripes, so operations on
+ * different members and items do not contend, the same copy is never handed out twice, and the borrow
+ * limit of a member is checked and updated atomically. Catalog changes and searches share a read-write
+ * lock that circulation never takes.</p>
+ * 
+ * <p>Every public operation that changes or searches the library is timed into a {@link MetricsRegistry},
+ * which records the latency of each call and whether it succeeded.</p>
  */
 public class UniversityLibrary {
     private List<Item> items;
     private List<Member> members;
-    private List<Transaction> activeTransactions;
+    private Map<String, Item> itemsById;
+    private Map<String, Member> membersById;
+    private NGramIndex titleIndex;
+    private NGramIndex authorIndex;
+    private NGramIndex topicIndex;
+    private PopularityRanking popularity;
+    private SymbolTable authors;
+    private SymbolTable topics;
+    private List<IntList> itemsByAuthor;
+    private FacetIndex facets;
+    private AutocompleteIndex titleCompletions;
+    private AutocompleteIndex authorCompletions;
+    private DigitalRanking mostViewed;
+    private DigitalRanking mostDownloaded;
+    private ItemListener catalogListener;
+    private TransactionHistory history;
+    private IntFunction<Item> itemResolver;
+    private int historyRetention;
+    private TransactionIdGenerator transactionIds;
     private RepairSection repairSection;
+    private StripedLock memberLocks;
+    private StripedLock itemLocks;
+    private ReadWriteLock catalogLock;
+    private TransactionJournal journal;
+    private final MetricsRegistry metrics;
+    private final MetricsRegistry.Operation addItemMetrics;
+    private final MetricsRegistry.Operation registerMemberMetrics;
+    private final MetricsRegistry.Operation borrowMetrics;
+    private final MetricsRegistry.Operation returnMetrics;
+    private final MetricsRegistry.Operation batchMetrics;
+    private final MetricsRegistry.Operation repairMetrics;
+    private final MetricsRegistry.Operation titleSearchMetrics;
+    private final MetricsRegistry.Operation authorSearchMetrics;
+    private final MetricsRegistry.Operation topicSearchMetrics;
+    private final MetricsRegistry.Operation fuzzySearchMetrics;
 
     /**
      * Constructor that initializes the library with empty lists for items, members, and transactions,
      * and creates a new repair section for damaged items.
+     * The library is not safe for use by several threads.
      */
     public UniversityLibrary() {
+        this(false);
+    }
+
+    /**
+     * Constructor that initializes the library with empty lists for items, members, and transactions,
+     * and creates a new repair section for damaged items.
+     * 
+     * @param concurrent True to allow borrowing, returning and searching from several threads at once.
+     */
+    public UniversityLibrary(boolean concurrent) {
+        this(concurrent, 0);
+    }
+
+    /**
+     * Constructor that initializes the library with empty lists for items, members, and transactions,
+     * and creates a new repair section for damaged items.
+     * Libraries that share members or items must use different node IDs so their transaction IDs never clash.
+     * 
+     * @param concurrent True to allow borrowing, returning and searching from several threads at once.
+     * @param nodeId     The ID of this library node, between 0 and {@link TransactionIdGenerator#MAX_NODE_ID}.
+     */
+    public UniversityLibrary(boolean concurrent, int nodeId) {
         items = new ArrayList<>();
         members = new ArrayList<>();
-        activeTransactions = new ArrayList<>();
+        itemsById = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        membersById = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        titleIndex = new NGramIndex();
+        authorIndex = new NGramIndex();
+        topicIndex = new NGramIndex();
+        popularity = new PopularityRanking(concurrent);
+        authors = new SymbolTable();
+        topics = new SymbolTable();
+        itemsByAuthor = new ArrayList<>();
+        facets = new FacetIndex(topics);
+        mostViewed = new DigitalRanking(DigitalItem::getViews);
+        mostDownloaded = new DigitalRanking(DigitalItem::getDownloads);
+        catalogListener = new CatalogListener();
+        itemResolver = this::itemAt;
+        titleCompletions = new AutocompleteIndex(Item::getTitle);
+        authorCompletions = new AutocompleteIndex(Item::getAuthor);
+        historyRetention = BorrowHistory.UNLIMITED;
+        history = new TransactionHistory(this::memberAt, itemResolver);
+        transactionIds = new TransactionIdGenerator(nodeId);
         repairSection = new RepairSection();
+        metrics = new MetricsRegistry();
+        addItemMetrics = metrics.operation("addItem");
+        registerMemberMetrics = metrics.operation("registerMember");
+        borrowMetrics = metrics.operation("borrowItem");
+        returnMetrics = metrics.operation("returnItem");
+        batchMetrics = metrics.operation("applyBatch");
+        repairMetrics = metrics.operation("checkAndRepairDamagedItems");
+        titleSearchMetrics = metrics.operation("searchByTitle");
+        authorSearchMetrics = metrics.operation("searchByAuthor");
+        topicSearchMetrics = metrics.operation("searchByTopic");
+        fuzzySearchMetrics = metrics.operation("fuzzySearch");
+        repairSection.setMetrics(metrics.operation("repair"), metrics.counter("repair.archived"));
+        if (concurrent) {
+            memberLocks = StripedLock.forProcessors();
+            itemLocks = StripedLock.forProcessors();
+            catalogLock = new ReentrantReadWriteLock();
+            repairSection.setItemLocks(itemLocks);
+        }
     }
 
     /**
      * Adds an item to the library's collection.
+     * Items are indexed by ID, so an item whose ID is already catalogued is rejected.
+     * The title, author and topic of the item are added to the search indexes, and the item is ranked
+     * by its borrow count from then on.
      * 
      * @param item The item to be added.
+     * @return True if the item was added, false if an item with the same ID already exists.
+     */
+    public boolean addItem(Item item) {
+        long start = System.nanoTime();
+        boolean added = false;
+        Lock lock = catalogWriteLock();
+        acquire(lock);
+        try {
+            added = catalogItem(item);
+            return added;
+        } finally {
+            release(lock);
+            addItemMetrics.record(start, added);
+        }
+    }
+
+    /**
+     * Adds a batch of items to the library's collection under a single catalog update.
+     * Items whose ID is already catalogued, including earlier in the same batch, are rejected.
+     * 
+     * @param batch The items to be added, in order.
+     * @return For each item of the batch, true if it was added, false if it was rejected.
      */
-    public void addItem(Item item) {
+    public boolean[] addItems(List<? extends Item> batch) {
+        boolean[] added = new boolean[batch.size()];
+        Lock lock = catalogWriteLock();
+        acquire(lock);
+        try {
+            for (int i = 0; i < added.length; i++) {
+                added[i] = catalogItem(batch.get(i));
+            }
+        } finally {
+            release(lock);
+        }
+        return added;
+    }
+
+    /**
+     * Adds an item to the collection and all indexes; the caller holds the catalog write lock.
+     * 
+     * @param item The item to be added.
+     * @return True if the item was added, false if an item with the same ID already exists.
+     */
+    private boolean catalogItem(Item item) {
+        if (itemsById.containsKey(item.getId())) {
+            return false;
+        }
+        int ordinal = items.size();
         items.add(item);
+        item.setOrdinal(ordinal);
+        item.encode(authors, topics);
+        int author = item.getAuthorCode();
+        if (author >= 0) {
+            while (itemsByAuthor.size() <= author) {
+                itemsByAuthor.add(new IntList(1));
+            }
+            itemsByAuthor.get(author).add(ordinal);
+        }
+        item.setListener(catalogListener);
+        titleIndex.add(ordinal, item.getTitle());
+        authorIndex.add(ordinal, item.getAuthor());
+        topicIndex.add(ordinal, item.getTopic());
+        popularity.add(item);
+        facets.add(item);
+        titleCompletions.add(item);
+        authorCompletions.add(item);
+        mostViewed.update(item);
+        mostDownloaded.update(item);
+        itemsById.put(item.getId(), item);
+        return true;
     }
 
     /**
      * Registers a member to the library system.
+     * Members are indexed by ID, so a member whose ID is already registered is rejected.
+     * 
+     * @param member The member to be registered.
+     * @return True if the member was registered, false if a member with the same ID already exists.
+     */
+    public boolean registerMember(Member member) {
+        long start = System.nanoTime();
+        boolean registered = false;
+        Lock lock = catalogWriteLock();
+        acquire(lock);
+        try {
+            registered = enrollMember(member);
+            return registered;
+        } finally {
+            release(lock);
+            registerMemberMetrics.record(start, registered);
+        }
+    }
+
+    /**
+     * Registers a batch of members under a single catalog update.
+     * Members whose ID is already registered, including earlier in the same batch, are rejected.
+     * 
+     * @param batch The members to be registered, in order.
+     * @return For each member of the batch, true if it was registered, false if it was rejected.
+     */
+    public boolean[] registerMembers(List<? extends Member> batch) {
+        boolean[] added = new boolean[batch.size()];
+        Lock lock = catalogWriteLock();
+        acquire(lock);
+        try {
+            for (int i = 0; i < added.length; i++) {
+                added[i] = enrollMember(batch.get(i));
+            }
+        } finally {
+            release(lock);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a member to the member list and index; the caller holds the catalog write lock.
      * 
      * @param member The member to be registered.
+     * @return True if the member was registered, false if a member with the same ID already exists.
      */
-    public void registerMember(Member member) {
+    private boolean enrollMember(Member member) {
+        if (membersById.containsKey(member.getId())) {
+            return false;
+        }
+        member.setOrdinal(members.size());
+        member.setItemResolver(itemResolver);
+        if (member.getBorrowHistory().getRetention() != historyRetention) {
+            member.getBorrowHistory().setRetention(historyRetention);
+        }
         members.add(member);
+        membersById.put(member.getId(), member);
+        return true;
     }
 
     /**
@@ -54,16 +294,62 @@ public class UniversityLibrary {
      * @return True if the borrowing is successful, otherwise false.
      */
     public boolean borrowItem(String memberId, String itemId) {
+        long start = System.nanoTime();
+        boolean borrowed = false;
+        try {
+            borrowed = borrow(memberId, itemId);
+            return borrowed;
+        } finally {
+            borrowMetrics.record(start, borrowed);
+        }
+    }
+
+    /**
+     * Borrows an item for a member; the work behind {@link #borrowItem}.
+     * The borrow is checked and its journal record written before the member and item change, and the record
+     * is forced after the locks are released, so a failed journal write leaves the library unchanged.
+     * A transaction ID is only drawn once the borrow is accepted.
+     * 
+     * @param memberId The ID of the member borrowing the item.
+     * @param itemId The ID of the item being borrowed.
+     * @return True if the borrowing is successful, otherwise false.
+     */
+    private boolean borrow(String memberId, String itemId) {
         Member member = findMemberById(memberId);
         Item item = findItemById(itemId);
 
-        if (member != null && item != null && member.borrowResource(item)) {
-            String transactionId = "TX" + (activeTransactions.size() + 1);
-            Transaction transaction = new Transaction(transactionId, "Borrow", new Date(), member, item);
-            activeTransactions.add(transaction);
-            return true;
+        if (member == null || item == null) {
+            return false;
+        }
+
+        boolean borrowed = false;
+        long now = System.currentTimeMillis();
+        long id = -1;
+        long position = -1;
+        Lock memberLock = memberLock(member);
+        Lock itemLock = itemLock(item);
+        acquire(memberLock);
+        acquire(itemLock);
+        try {
+            if (member.canBorrow(item)) {
+                id = transactionIds.nextId();
+                if (journal != null) {
+                    position = journal.stage(TransactionJournal.BORROW, now, id, member.getId(), item.getId(), false);
+                }
+                borrowed = member.borrowResource(item);
+            }
+        } finally {
+            release(itemLock);
+            release(memberLock);
+        }
+
+        if (borrowed) {
+            recordTransaction(id, TransactionHistory.BORROW, now, member, item);
         }
-        return false;
+        if (position >= 0) {
+            journal.commit(position);
+        }
+        return borrowed;
     }
 
     /**
@@ -75,18 +361,342 @@ public class UniversityLibrary {
      * @param damaged Indicates whether the item is damaged or not.
      */
     public void returnItem(String memberId, String itemId, boolean damaged) {
+        long start = System.nanoTime();
+        boolean returned = false;
+        try {
+            returned = giveBack(memberId, itemId, damaged);
+        } finally {
+            returnMetrics.record(start, returned);
+        }
+    }
+
+    /**
+     * Returns an item for a member; the work behind {@link #returnItem}.
+     * The journal record is written before the member and item change and forced after the locks are released.
+     * A return of an item the member does not hold is refused without a transaction.
+     * 
+     * @param memberId The ID of the member returning the item.
+     * @param itemId The ID of the item being returned.
+     * @param damaged Indicates whether the item is damaged or not.
+     * @return True if the member had borrowed the item, otherwise false.
+     */
+    private boolean giveBack(String memberId, String itemId, boolean damaged) {
         Member member = findMemberById(memberId);
         Item item = findItemById(itemId);
+        Copy copy = null;
 
         if (member != null && item != null) {
-            member.returnResource(item, damaged);
-            String transactionId = "TX" + (activeTransactions.size() + 1);
-            Transaction transaction = new Transaction(transactionId, "Return", new Date(), member, item);
-            activeTransactions.add(transaction);
-            if (damaged) {
-                repairSection.requestRepair(item);
+            long now = System.currentTimeMillis();
+            long id = -1;
+            long position = -1;
+            Lock memberLock = memberLock(member);
+            Lock itemLock = itemLock(item);
+            acquire(memberLock);
+            acquire(itemLock);
+            try {
+                if (member.hasBorrowed(item)) {
+                    id = transactionIds.nextId();
+                    if (journal != null) {
+                        position = journal.stage(TransactionJournal.RETURN, now, id, member.getId(), item.getId(),
+                                damaged);
+                    }
+                    copy = member.returnResource(item, damaged);
+                }
+            } finally {
+                release(itemLock);
+                release(memberLock);
+            }
+            if (copy != null) {
+                recordTransaction(id, TransactionHistory.RETURN, now, member, item);
+            }
+            if (position >= 0) {
+                journal.commit(position);
+            }
+            if (damaged && copy != null) {
+                repairSection.requestRepair(item, copy);
+            }
+        }
+        return copy != null;
+    }
+
+    /**
+     * Applies a batch of borrow and return operations.
+     * All member and item IDs are resolved before any operation runs, every operation shares one timestamp,
+     * the journal records of the batch are forced once at the end, and the resulting transactions are added
+     * to the transaction history together. Damaged returns are sent for repair after the batch is durable.
+     * If a journal record cannot be written, the operations before it stay applied: their transactions are
+     * still added to the history, their records forced and their damaged copies sent for repair before the
+     * failure is thrown.
+     *
+     * @param batch The operations to apply, in order.
+     * @return The outcome of each operation: {@link CirculationBatch#OK}, {@link CirculationBatch#UNKNOWN_MEMBER},
+     *         {@link CirculationBatch#UNKNOWN_ITEM} or {@link CirculationBatch#REJECTED}.
+     */
+    public byte[] applyBatch(CirculationBatch batch) {
+        long start = System.nanoTime();
+        boolean applied = false;
+        try {
+            byte[] results = apply(batch);
+            applied = true;
+            return results;
+        } finally {
+            batchMetrics.record(start, applied);
+        }
+    }
+
+    /**
+     * Applies a batch of borrow and return operations; the work behind {@link #applyBatch}.
+     *
+     * @param batch The operations to apply, in order.
+     * @return The outcome of each operation.
+     */
+    private byte[] apply(CirculationBatch batch) {
+        int size = batch.size();
+        byte[] results = new byte[size];
+        Member[] resolvedMembers = new Member[size];
+        Item[] resolvedItems = new Item[size];
+        for (int i = 0; i < size; i++) {
+            resolvedMembers[i] = findMemberById(batch.memberId(i));
+            resolvedItems[i] = findItemById(batch.itemId(i));
+            if (resolvedMembers[i] == null) {
+                results[i] = CirculationBatch.UNKNOWN_MEMBER;
+            } else if (resolvedItems[i] == null) {
+                results[i] = CirculationBatch.UNKNOWN_ITEM;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long[] ids = new long[size];
+        byte[] types = new byte[size];
+        int[] memberOrdinals = new int[size];
+        int[] itemOrdinals = new int[size];
+        int applied = 0;
+        List<Item> damagedItems = new ArrayList<>();
+        List<Copy> damagedCopies = new ArrayList<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (results[i] != CirculationBatch.OK) {
+                    continue;
+                }
+                Member member = resolvedMembers[i];
+                Item item = resolvedItems[i];
+                byte kind = batch.kind(i);
+                long id;
+                Lock memberLock = memberLock(member);
+                Lock itemLock = itemLock(item);
+                acquire(memberLock);
+                acquire(itemLock);
+                try {
+                    if (kind == CirculationBatch.BORROW) {
+                        if (!member.canBorrow(item)) {
+                            results[i] = CirculationBatch.REJECTED;
+                            continue;
+                        }
+                        id = transactionIds.nextId();
+                        if (journal != null) {
+                            journal.stage(TransactionJournal.BORROW, now, id, member.getId(), item.getId(), false);
+                        }
+                        member.borrowResource(item);
+                    } else {
+                        if (!member.hasBorrowed(item)) {
+                            results[i] = CirculationBatch.REJECTED;
+                            continue;
+                        }
+                        id = transactionIds.nextId();
+                        boolean damaged = kind == CirculationBatch.RETURN_DAMAGED;
+                        if (journal != null) {
+                            journal.stage(TransactionJournal.RETURN, now, id, member.getId(), item.getId(), damaged);
+                        }
+                        Copy copy = member.returnResource(item, damaged);
+                        if (damaged && copy != null) {
+                            damagedItems.add(item);
+                            damagedCopies.add(copy);
+                        }
+                    }
+                } finally {
+                    release(itemLock);
+                    release(memberLock);
+                }
+                ids[applied] = id;
+                types[applied] = kind == CirculationBatch.BORROW ? TransactionHistory.BORROW : TransactionHistory.RETURN;
+                memberOrdinals[applied] = member.getOrdinal();
+                itemOrdinals[applied] = item.getOrdinal();
+                applied++;
+            }
+        } finally {
+            history.appendAll(now, ids, types, memberOrdinals, itemOrdinals, applied);
+            try {
+                if (journal != null) {
+                    journal.commit();
+                }
+            } finally {
+                for (int i = 0; i < damagedItems.size(); i++) {
+                    repairSection.requestRepair(damagedItems.get(i), damagedCopies.get(i));
+                }
             }
         }
+        return results;
+    }
+
+    /**
+     * Adds a transaction to the transaction history.
+     * 
+     * @param id        The ID of the transaction.
+     * @param type      {@link TransactionHistory#BORROW} or {@link TransactionHistory#RETURN}.
+     * @param timestamp The time of the transaction in epoch milliseconds.
+     * @param member    The member involved in the transaction.
+     * @param item      The item involved in the transaction.
+     */
+    void recordTransaction(long id, byte type, long timestamp, Member member, Item item) {
+        history.append(id, type, timestamp, member == null ? -1 : member.getOrdinal(),
+                item == null ? -1 : item.getOrdinal());
+    }
+
+    /**
+     * Adds a transaction from a snapshot to the transaction history and reserves its ID,
+     * so IDs issued later never repeat it.
+     * 
+     * @param id        The ID of the transaction.
+     * @param type      {@link TransactionHistory#BORROW} or {@link TransactionHistory#RETURN}.
+     * @param timestamp The time of the transaction in epoch milliseconds.
+     * @param member    The member involved in the transaction.
+     * @param item      The item involved in the transaction.
+     */
+    void restoreTransaction(long id, byte type, long timestamp, Member member, Item item) {
+        transactionIds.advancePast(id);
+        recordTransaction(id, type, timestamp, member, item);
+    }
+
+    /**
+     * Replays a journal into the library and appends all further circulation activity to it.
+     * The catalog and members must be loaded before the journal is attached.
+     * Damaged copies whose repair outcome is not in the journal are sent for repair again once the journal
+     * records outcomes, right away unless the repair section has been started.
+     * 
+     * @param journal The journal to recover from and write to.
+     * @return The number of journal records that were replayed.
+     * @throws IOException If the journal cannot be read.
+     */
+    public long attachJournal(TransactionJournal journal) throws IOException {
+        long replayed = journal.replay(this);
+        this.journal = journal;
+        repairSection.setRepairListener((item, copy, archived) -> journal.append(TransactionJournal.REPAIR,
+                System.currentTimeMillis(), 0, Integer.toString(copy.getNumber()), item.getId(), archived));
+        requeueDamagedCopies();
+        if (!repairSection.isRunning()) {
+            repairSection.drain();
+        }
+        return replayed;
+    }
+
+    /**
+     * Sends every damaged copy that has no repair outcome back to the repair queue, such as after a restart.
+     * The copies are queued without being processed.
+     *
+     * @return The number of copies queued.
+     */
+    int requeueDamagedCopies() {
+        List<Item> catalog;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            catalog = new ArrayList<>(items);
+        } finally {
+            release(lock);
+        }
+        return repairSection.requeueDamaged(catalog);
+    }
+
+    /**
+     * Applies one journal record to the library without journaling it again.
+     * The transaction IDs of borrow and return records are reserved, so IDs issued later never repeat them.
+     * 
+     * @param type      The record type.
+     * @param timestamp The time of the operation in epoch milliseconds.
+     * @param id        The ID of the transaction, or 0 for repair records.
+     * @param memberId  The ID of the member, or for repair records the number of the copy.
+     * @param itemId    The ID of the item.
+     * @param flag      The damaged flag of a return, or the archived flag of a repair.
+     * @return True if the record was applied, false if it refers to an unknown member, item or copy.
+     */
+    boolean applyJournalRecord(byte type, long timestamp, long id, String memberId, String itemId, boolean flag) {
+        Item item = findItemById(itemId);
+        if (item == null) {
+            return false;
+        }
+        if (type == TransactionJournal.REPAIR) {
+            Copy copy = memberId == null ? null : findCopy(item, memberId);
+            if (copy == null) {
+                return false;
+            }
+            repairSection.applyRepair(item, copy, flag);
+            return true;
+        }
+
+        transactionIds.advancePast(id);
+        Member member = memberId == null ? null : findMemberById(memberId);
+        if (member == null) {
+            return false;
+        }
+        if (type == TransactionJournal.BORROW) {
+            if (!member.borrowResource(item)) {
+                return false;
+            }
+            recordTransaction(id, TransactionHistory.BORROW, timestamp, member, item);
+        } else if (type == TransactionJournal.RETURN) {
+            member.returnResource(item, flag);
+            recordTransaction(id, TransactionHistory.RETURN, timestamp, member, item);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Looks up a registered member by ordinal.
+     * 
+     * @param ordinal The member ordinal.
+     * @return The member.
+     */
+    private Member memberAt(int ordinal) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return members.get(ordinal);
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Looks up a catalogued item by ordinal.
+     * 
+     * @param ordinal The item ordinal.
+     * @return The item.
+     */
+    private Item itemAt(int ordinal) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return items.get(ordinal);
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Finds a created copy of an item by the number recorded in a repair record.
+     * 
+     * @param item   The item.
+     * @param number The copy number as text.
+     * @return The copy, or null if the item has no created copy with that number.
+     */
+    private static Copy findCopy(Item item, String number) {
+        try {
+            return item.findCopy(Integer.parseInt(number));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
@@ -96,12 +706,7 @@ public class UniversityLibrary {
      * @return The member with the given ID, or null if not found.
      */
     private Member findMemberById(String memberId) {
-        for (int i = 0; i < members.size(); i++) {
-            if (members.get(i).getId().equals(memberId)) {
-                return members.get(i);
-            }
-        }
-        return null;
+        return membersById.get(memberId);
     }
 
     /**
@@ -111,19 +716,21 @@ public class UniversityLibrary {
      * @return The item with the given ID, or null if not found.
      */
     private Item findItemById(String itemId) {
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getId().equals(itemId)) {
-                return items.get(i);
-            }
-        }
-        return null;
+        return itemsById.get(itemId);
     }
 
     /**
      * Checks for damaged items and sends them for repair if needed.
      */
     public void checkAndRepairDamagedItems() {
-        repairSection.periodicRepair();
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            repairSection.periodicRepair();
+            completed = true;
+        } finally {
+            repairMetrics.record(start, completed);
+        }
     }
 
     /**
@@ -133,14 +740,18 @@ public class UniversityLibrary {
      * @return A list of items whose titles contain the given title.
      */
     public List<Item> searchByTitle(String title) {
-        List<Item> result = new ArrayList<>();
-        for (int i = 0; i < items.size(); i++) {
-            String itemTitle = items.get(i).getTitle();
-            if (itemTitle.toLowerCase().contains(title.toLowerCase())) {
-                result.add(items.get(i));
-            }
+        long start = System.nanoTime();
+        boolean found = false;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            List<Item> result = resolveItems(titleIndex.search(title));
+            found = true;
+            return result;
+        } finally {
+            release(lock);
+            titleSearchMetrics.record(start, found);
         }
-        return result;
     }
 
     /**
@@ -150,58 +761,322 @@ public class UniversityLibrary {
      * @return A list of items written by the given author.
      */
     public List<Item> searchByAuthor(String author) {
-        List<Item> result = new ArrayList<>();
-        for (int i = 0; i < items.size(); i++) {
-            String itemAuthor = items.get(i).getAuthor();
-            if (itemAuthor.toLowerCase().contains(author.toLowerCase())) {
-                result.add(items.get(i));
+        long start = System.nanoTime();
+        boolean found = false;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            List<Item> result = resolveItems(authorIndex.search(author));
+            found = true;
+            return result;
+        } finally {
+            release(lock);
+            authorSearchMetrics.record(start, found);
+        }
+    }
+
+    /**
+     * Searches for one page of items by title. Matching stops once the page is full, so every page of a
+     * broad query costs about as much as the page.
+     * 
+     * @param title The title to search for.
+     * @param token The token of the page from {@link Page#getNextToken()}, or null for the first page.
+     * @param limit The maximum number of items on the page.
+     * @return The page of items whose titles contain the given title.
+     * @throws IllegalArgumentException If the token is invalid or the limit is not positive.
+     */
+    public Page<Item> searchByTitle(String title, String token, int limit) {
+        return searchPage(titleIndex, titleSearchMetrics, title, token, limit);
+    }
+
+    /**
+     * Searches for one page of items by author. Matching stops once the page is full.
+     * 
+     * @param author The author to search for.
+     * @param token  The token of the page from {@link Page#getNextToken()}, or null for the first page.
+     * @param limit  The maximum number of items on the page.
+     * @return The page of items written by the given author.
+     * @throws IllegalArgumentException If the token is invalid or the limit is not positive.
+     */
+    public Page<Item> searchByAuthor(String author, String token, int limit) {
+        return searchPage(authorIndex, authorSearchMetrics, author, token, limit);
+    }
+
+    /**
+     * Searches one of the text indexes for one page of items under the catalog read lock.
+     * One match beyond the limit is looked for to tell whether another page follows.
+     * 
+     * @param index The index to search.
+     * @param timer The timer of the search.
+     * @param query The text to search for.
+     * @param token The token of the page, or null for the first page.
+     * @param limit The maximum number of items on the page.
+     * @return The page of matching items.
+     */
+    private Page<Item> searchPage(NGramIndex index, MetricsRegistry.Operation timer, String query, String token,
+            int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        int from = Page.position(token);
+        long start = System.nanoTime();
+        boolean found = false;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            IntList ordinals = index.search(query, from, (int) Math.min((long) limit + 1, Integer.MAX_VALUE));
+            List<Item> entries = new ArrayList<>(Math.min(limit, ordinals.size()));
+            for (int i = 0; i < Math.min(limit, ordinals.size()); i++) {
+                entries.add(items.get(ordinals.get(i)));
             }
+            String next = ordinals.size() > limit ? Page.token(ordinals.get(limit)) : null;
+            found = true;
+            return new Page<>(entries, next);
+        } finally {
+            release(lock);
+            timer.record(start, found);
+        }
+    }
+
+    /**
+     * Searches for items by topic.
+     * 
+     * @param topic The topic to search for.
+     * @return A list of items whose topics contain the given topic.
+     */
+    public List<Item> searchByTopic(String topic) {
+        long start = System.nanoTime();
+        boolean found = false;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            List<Item> result = resolveItems(topicIndex.search(topic));
+            found = true;
+            return result;
+        } finally {
+            release(lock);
+            topicSearchMetrics.record(start, found);
+        }
+    }
+
+    /**
+     * Searches for items by title, tolerating up to two typos in the query.
+     * 
+     * @param title The title to search for, possibly misspelled.
+     * @param limit The maximum number of items to return.
+     * @return The items whose titles contain the title within the typo budget, closest first.
+     * @see NGramIndex#fuzzySearch(String, int, int)
+     */
+    public List<Item> fuzzySearchByTitle(String title, int limit) {
+        return fuzzySearch(titleIndex, title, limit);
+    }
+
+    /**
+     * Searches for items by author, tolerating up to two typos in the query.
+     * 
+     * @param author The author to search for, possibly misspelled.
+     * @param limit  The maximum number of items to return.
+     * @return The items whose authors contain the author within the typo budget, closest first.
+     * @see NGramIndex#fuzzySearch(String, int, int)
+     */
+    public List<Item> fuzzySearchByAuthor(String author, int limit) {
+        return fuzzySearch(authorIndex, author, limit);
+    }
+
+    /**
+     * Runs a fuzzy search against one of the text indexes under the catalog read lock.
+     * 
+     * @param index The index to search.
+     * @param query The text to search for.
+     * @param limit The maximum number of items to return.
+     * @return The matching items, closest first.
+     */
+    private List<Item> fuzzySearch(NGramIndex index, String query, int limit) {
+        long start = System.nanoTime();
+        boolean found = false;
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            List<Item> result = resolveItems(index.fuzzySearch(query, 2, limit));
+            found = true;
+            return result;
+        } finally {
+            release(lock);
+            fuzzySearchMetrics.record(start, found);
+        }
+    }
+
+    /**
+     * Completes a typed title prefix with the most borrowed items that have a title word starting with it.
+     * Case and punctuation are ignored, and the cost does not grow with the number of matching items.
+     * 
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of items to return, at most 10.
+     * @return The matching items, most borrowed first.
+     */
+    public List<Item> completeTitle(String prefix, int limit) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return resolveItems(titleCompletions.complete(prefix, limit));
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Completes a typed author prefix with the most borrowed items that have an author word starting with it.
+     * 
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of items to return, at most 10.
+     * @return The matching items, most borrowed first.
+     */
+    public List<Item> completeAuthor(String prefix, int limit) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return resolveItems(authorCompletions.complete(prefix, limit));
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Finds the items by exactly the given author from the author's list of ordinals, without scanning the
+     * catalog.
+     * 
+     * @param author The author, spelled exactly as catalogued.
+     * @return The items by the author, in the order they were added.
+     */
+    public List<Item> getItemsByAuthor(String author) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            int code = authors.find(author);
+            return code < 0 ? new ArrayList<>() : resolveItems(itemsByAuthor.get(code));
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Finds the items on exactly the given topic from the topic facet, without scanning the catalog.
+     * 
+     * @param topic The topic, spelled exactly as catalogued.
+     * @return The items on the topic, in the order they were added.
+     */
+    public List<Item> getItemsOnTopic(String topic) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return resolveItems(facets.topicOrdinals(topic));
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Finds the items of one type from the type facet, without scanning the catalog.
+     * 
+     * @param type The simple class name of the type, such as {@code Book}, {@code Thesis} or
+     *             {@code ResearchPaper}.
+     * @return The items of the type, in the order they were added.
+     */
+    public List<Item> getItemsOfType(String type) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return resolveItems(facets.typeOrdinals(type));
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Counts the items on each topic.
+     * 
+     * @return The number of items per topic, sorted by topic.
+     */
+    public Map<String, Integer> countItemsByTopic() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (FacetIndex.FacetCount facet : getTopicFacets()) {
+            result.put(facet.getName(), facet.getItems());
         }
         return result;
     }
 
     /**
-     * Retrieves the most popular items in the library based on the number of times they have been borrowed.
+     * Retrieves every topic with its number of items, available copies and borrows.
+     * The totals are kept current by cataloguing and circulation, so this costs as much as the number of topics.
      * 
-     * @return A list of the top 5 most popular items, sorted by borrow count.
+     * @return The topic facets, sorted by topic.
      */
-    public List<Item> getMostPopularItems() {
-        List<Item> sorted = new ArrayList<>(items);
-
-        for (int i = 0; i < sorted.size() - 1; i++) {
-            for (int j = 0; j < sorted.size() - i - 1; j++) {
-                if (sorted.get(j).getBorrowCount() < sorted.get(j + 1).getBorrowCount()) {
-                    Item temp = sorted.get(j);
-                    sorted.set(j, sorted.get(j + 1));
-                    sorted.set(j + 1, temp);
-                }
-            }
+    public List<FacetIndex.FacetCount> getTopicFacets() {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return facets.topicCounts();
+        } finally {
+            release(lock);
         }
+    }
 
-        List<Item> result = new ArrayList<>();
-        int limit = Math.min(5, sorted.size());
-        for (int i = 0; i < limit; i++) {
-            result.add(sorted.get(i));
+    /**
+     * Retrieves every item type with its number of items, available copies and borrows.
+     * 
+     * @return The type facets, sorted by type name.
+     */
+    public List<FacetIndex.FacetCount> getTypeFacets() {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return facets.typeCounts();
+        } finally {
+            release(lock);
         }
+    }
 
+    /**
+     * Maps item ordinals from a search index back to the catalogued items.
+     * 
+     * @param ordinals The ordinals of the items.
+     * @return A list of the items, in the order of the ordinals.
+     */
+    private List<Item> resolveItems(IntList ordinals) {
+        List<Item> result = new ArrayList<>(ordinals.size());
+        for (int i = 0; i < ordinals.size(); i++) {
+            result.add(items.get(ordinals.get(i)));
+        }
         return result;
     }
 
+    /**
+     * Retrieves the most popular items in the library based on the number of times they have been borrowed.
+     * 
+     * @return A list of the top 5 most popular items, sorted by borrow count.
+     */
+    public List<Item> getMostPopularItems() {
+        return getMostPopularItems(5);
+    }
+
+    /**
+     * Retrieves the most popular items in the library based on the number of times they have been borrowed.
+     * Items with equal borrow counts are listed in the order they were added.
+     * 
+     * @param limit The maximum number of items to return.
+     * @return A list of up to {@code limit} items, sorted by borrow count.
+     */
+    public List<Item> getMostPopularItems(int limit) {
+        return popularity.top(limit);
+    }
+
     /**
      * Retrieves the most popular item in the library based on the number of times it has been borrowed.
      * 
      * @return The most popular item, or null if the library has no items.
      */
     public Item getMostPopularItem() {
-        if (items.isEmpty()) return null;
-
-        Item mostPopular = items.get(0);
-        for (int i = 1; i < items.size(); i++) {
-            if (items.get(i).getBorrowCount() > mostPopular.getBorrowCount()) {
-                mostPopular = items.get(i);
-            }
-        }
-        return mostPopular;
+        return popularity.first();
     }
 
     /**
@@ -210,20 +1085,7 @@ public class UniversityLibrary {
      * @return The most viewed digital item, or null if there are no digital items or views.
      */
     public Item getMostViewedDigitalItem() {
-        Item result = null;
-        int maxViews = -1;
-
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getDigitalVersion() != null) {
-                int views = items.get(i).getDigitalVersion().getViews();
-                if (views > maxViews) {
-                    maxViews = views;
-                    result = items.get(i);
-                }
-            }
-        }
-
-        return result;
+        return mostViewed.first();
     }
 
     /**
@@ -232,20 +1094,7 @@ public class UniversityLibrary {
      * @return The most downloaded digital item, or null if there are no digital items or downloads.
      */
     public Item getMostDownloadedDigitalItem() {
-        Item result = null;
-        int maxDownloads = -1;
-
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getDigitalVersion() != null) {
-                int downloads = items.get(i).getDigitalVersion().getDownloads();
-                if (downloads > maxDownloads) {
-                    maxDownloads = downloads;
-                    result = items.get(i);
-                }
-            }
-        }
-
-        return result;
+        return mostDownloaded.first();
     }
 
     /**
@@ -254,11 +1103,13 @@ public class UniversityLibrary {
      * @return A list of all items.
      */
     public List<Item> getItems() {
-        List<Item> copy = new ArrayList<>();
-        for (int i = 0; i < items.size(); i++) {
-            copy.add(items.get(i));
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return new ArrayList<>(items);
+        } finally {
+            release(lock);
         }
-        return copy;
     }
 
     /**
@@ -267,20 +1118,131 @@ public class UniversityLibrary {
      * @return A list of all members.
      */
     public List<Member> getMembers() {
-        List<Member> copy = new ArrayList<>();
-        for (int i = 0; i < members.size(); i++) {
-            copy.add(members.get(i));
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return new ArrayList<>(members);
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Retrieves one page of the items in the library, in the order they were added.
+     * 
+     * @param token The token of the page from {@link Page#getNextToken()}, or null for the first page.
+     * @param limit The maximum number of items on the page.
+     * @return The page of items.
+     * @throws IllegalArgumentException If the token is invalid or the limit is not positive.
+     */
+    public Page<Item> getItems(String token, int limit) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return pageOf(items, token, limit);
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Retrieves one page of the members of the library, in the order they registered.
+     * 
+     * @param token The token of the page from {@link Page#getNextToken()}, or null for the first page.
+     * @param limit The maximum number of members on the page.
+     * @return The page of members.
+     * @throws IllegalArgumentException If the token is invalid or the limit is not positive.
+     */
+    public Page<Member> getMembers(String token, int limit) {
+        Lock lock = catalogReadLock();
+        acquire(lock);
+        try {
+            return pageOf(members, token, limit);
+        } finally {
+            release(lock);
         }
-        return copy;
+    }
+
+    /**
+     * Copies one page of a catalog list; the caller holds the catalog read lock.
+     * 
+     * @param <T>   The type of the entries.
+     * @param list  The catalog list.
+     * @param token The token of the page, or null for the first page.
+     * @param limit The maximum number of entries on the page.
+     * @return The page.
+     */
+    private static <T> Page<T> pageOf(List<T> list, String token, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        int from = Math.min(Page.position(token), list.size());
+        int to = (int) Math.min((long) from + limit, list.size());
+        return new Page<>(new ArrayList<>(list.subList(from, to)), to < list.size() ? Page.token(to) : null);
     }
 
     /**
      * Retrieves a list of active transactions in the library.
+     * The list is a read-only view of the transaction history in the order the transactions were recorded;
+     * it grows as transactions are recorded, and each transaction is built when it is read.
      * 
      * @return A list of active transactions.
      */
     public List<Transaction> getActiveTransactions() {
-        return activeTransactions;
+        return history.asList();
+    }
+
+    /**
+     * Retrieves the transactions within a time range.
+     * 
+     * @param from The start of the range in epoch milliseconds, inclusive.
+     * @param to   The end of the range in epoch milliseconds, exclusive.
+     * @return A read-only list of the transactions, in time order.
+     */
+    public List<Transaction> getTransactionsBetween(long from, long to) {
+        return history.view(history.rowsBetween(from, to));
+    }
+
+    /**
+     * Retrieves the transactions of a member.
+     * 
+     * @param memberId The ID of the member.
+     * @return A read-only list of the member's transactions in the order they were recorded,
+     *         empty if the member is unknown.
+     */
+    public List<Transaction> getTransactionsOfMember(String memberId) {
+        Member member = findMemberById(memberId);
+        return history.view(member == null ? new IntList() : history.rowsOfMember(member.getOrdinal()));
+    }
+
+    /**
+     * Retrieves the transactions of an item.
+     * 
+     * @param itemId The ID of the item.
+     * @return A read-only list of the item's transactions in the order they were recorded,
+     *         empty if the item is unknown.
+     */
+    public List<Transaction> getTransactionsOfItem(String itemId) {
+        Item item = findItemById(itemId);
+        return history.view(item == null ? new IntList() : history.rowsOfItem(item.getOrdinal()));
+    }
+
+    /**
+     * Retrieves the columnar store behind the transaction lists.
+     * 
+     * @return The transaction history.
+     */
+    public TransactionHistory getTransactionHistory() {
+        return history;
+    }
+
+    /**
+     * Retrieves the metrics of the library: the latency and outcome of every timed operation.
+     * 
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
 
     /**
@@ -291,4 +1253,179 @@ public class UniversityLibrary {
     public RepairSection getRepairSection() {
         return repairSection;
     }
+
+    /**
+     * Sets how many of their most recent returns every member's borrowing history keeps.
+     * Applies to the registered members, whose older entries are dropped, and to members registered later.
+     * 
+     * @param retention The number of entries to keep, or {@link BorrowHistory#UNLIMITED}.
+     */
+    public void setHistoryRetention(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Retention must be at least 1: " + retention);
+        }
+        Lock lock = catalogWriteLock();
+        acquire(lock);
+        try {
+            historyRetention = retention;
+            for (Member member : members) {
+                Lock memberLock = memberLock(member);
+                acquire(memberLock);
+                try {
+                    member.getBorrowHistory().setRetention(retention);
+                } finally {
+                    release(memberLock);
+                }
+            }
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Retrieves how many of their most recent returns every member's borrowing history keeps.
+     * 
+     * @return The number of entries kept.
+     */
+    public int getHistoryRetention() {
+        return historyRetention;
+    }
+
+    /**
+     * Checks if the library was created for use by several threads.
+     * 
+     * @return True if the library runs in concurrent mode, false otherwise.
+     */
+    public boolean isConcurrent() {
+        return catalogLock != null;
+    }
+
+    /**
+     * Retrieves the circulation lock of a member.
+     * 
+     * @param member The member.
+     * @return The lock of the member's stripe, or null outside concurrent mode.
+     */
+    private Lock memberLock(Member member) {
+        return memberLocks == null ? null : memberLocks.lockFor(member.getId());
+    }
+
+    /**
+     * Retrieves the circulation lock of an item.
+     * 
+     * @param item The item.
+     * @return The lock of the item's stripe, or null outside concurrent mode.
+     */
+    private Lock itemLock(Item item) {
+        return itemLocks == null ? null : itemLocks.lockFor(item.getOrdinal());
+    }
+
+    /**
+     * Retrieves the lock shared by readers of the catalog.
+     * 
+     * @return The read lock, or null outside concurrent mode.
+     */
+    private Lock catalogReadLock() {
+        return catalogLock == null ? null : catalogLock.readLock();
+    }
+
+    /**
+     * Retrieves the lock that catalog changes hold exclusively.
+     * 
+     * @return The write lock, or null outside concurrent mode.
+     */
+    private Lock catalogWriteLock() {
+        return catalogLock == null ? null : catalogLock.writeLock();
+    }
+
+    /**
+     * Acquires a lock if there is one.
+     * 
+     * @param lock The lock, or null.
+     */
+    private static void acquire(Lock lock) {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Releases a lock if there is one.
+     * 
+     * @param lock The lock, or null.
+     */
+    private static void release(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the catalog-wide structures current as catalogued items change.
+     */
+    private class CatalogListener implements ItemListener {
+
+        /**
+         * Moves the item within the popularity ranking and the title and author completions, and updates the
+         * borrow totals of its facets.
+         *
+         * @param item          The item whose borrow count changed.
+         * @param previousCount The borrow count before the change.
+         */
+        @Override
+        public void borrowCountChanged(Item item, int previousCount) {
+            popularity.update(item, previousCount);
+            facets.borrowCountChanged(item, previousCount);
+            titleCompletions.borrowCountChanged(item, previousCount);
+            authorCompletions.borrowCountChanged(item, previousCount);
+        }
+
+        /**
+         * Updates the available copy totals of the item's facets.
+         *
+         * @param item          The item whose available copies changed.
+         * @param previousCount The number of available copies before the change.
+         */
+        @Override
+        public void availableCopiesChanged(Item item, int previousCount) {
+            facets.availableCopiesChanged(item, previousCount);
+        }
+
+        /**
+         * Offers the item to the most viewed ranking.
+         *
+         * @param item The item that was viewed.
+         */
+        @Override
+        public void digitalViewsChanged(Item item) {
+            mostViewed.update(item);
+        }
+
+        /**
+         * Offers the item to the most downloaded ranking.
+         *
+         * @param item The item that was downloaded.
+         */
+        @Override
+        public void digitalDownloadsChanged(Item item) {
+            mostDownloaded.update(item);
+        }
+
+        /**
+         * Re-ranks the item in both digital rankings, scanning the catalog if it was a leader.
+         *
+         * @param item The item whose digital version changed.
+         */
+        @Override
+        public void digitalVersionChanged(Item item) {
+            Lock lock = catalogReadLock();
+            acquire(lock);
+            try {
+                mostViewed.reset(item, items);
+                mostDownloaded.reset(item, items);
+            } finally {
+                release(lock);
+            }
+        }
+    }
 }
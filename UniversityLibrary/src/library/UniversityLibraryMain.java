@@ -2,11 +2,16 @@ package library;
 
 import library.items.Book;
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import library.items.Item;
 import library.members.Alumni;
 import library.members.Faculty;
 import library.members.Member;
 import library.members.Student;
+import library.util.IdGenerator;
+import library.util.IdService;
 
 /**
  * Entry point for the University Library system.
@@ -16,37 +21,72 @@ import library.members.Student;
  * </p>
  */
 public class UniversityLibraryMain {
-    private static final String ITEMS_FILE = "C:\\Users\\mianm\\Desktop\\oop\\UniversityLibrary\\src\\library\\items.txt";
-    private static final String MEMBERS_FILE = "C:\\Users\\mianm\\Desktop\\oop\\UniversityLibrary\\src\\library\\members.txt";
+    private static final String DEFAULT_ITEMS_FILE = "src/library/items.txt";
+    private static final String DEFAULT_MEMBERS_FILE = "src/library/members.txt";
 
     /**
      * Main method to start the library system.
      * Loads items and members from files and performs demo operations.
+     * The items and members files are taken from the first two arguments, then from the {@code library.items}
+     * and {@code library.members} system properties, and default to the sample files under {@code src/library}.
+     * If the {@code library.journal} system property names a journal file, the journal is replayed over the
+     * loaded data and records all further circulation; {@code library.journal.fsync} selects the fsync policy.
+     * The journal is closed on the way out, also when the demonstration fails.
+     * If the {@code library.snapshot} system property names an existing snapshot, the library is loaded from it
+     * instead of the text files; otherwise the text files are imported and the snapshot is written from them.
+     * The {@code library.node} system property sets the node ID that transaction IDs are issued under, and
+     * {@code library.history.retention} limits how many returns each member's borrowing history keeps.
+     * If {@code library.repair.workers} is set, damaged copies are repaired in the background by that many worker
+     * threads every {@code library.repair.cadenceMillis}; {@code library.repair.seed} fixes the repair outcomes.
+     * Setting {@code library.ids} to {@code sequential} numbers new copies, books and members 1, 2, 3 instead of
+     * drawing their IDs at random. The operation metrics are printed at the end, and every {@code library.metrics.exportMillis} if it is set.
      *
-     * @param args Command-line arguments (not used).
+     * @param args Command-line arguments: the items file and the members file, both optional.
      */
     public static void main(String[] args) {
-        UniversityLibrary library = new UniversityLibrary();
+        UniversityLibrary library;
+        String itemsFile = args.length > 0 ? args[0] : System.getProperty("library.items", DEFAULT_ITEMS_FILE);
+        String membersFile = args.length > 1 ? args[1] : System.getProperty("library.members", DEFAULT_MEMBERS_FILE);
 
-        System.out.println("Starting Library System...");
-        System.out.println("Items file: " + ITEMS_FILE);
-        System.out.println("Members file: " + MEMBERS_FILE);
+        int nodeId = Integer.getInteger("library.node", 0);
+        if ("sequential".equalsIgnoreCase(System.getProperty("library.ids"))) {
+            IdService.setGenerator(IdGenerator.sequential());
+        }
 
-        if (!new File(ITEMS_FILE).exists()) {
-            System.err.println("ERROR: Items file not found at specified path");
-            System.err.println("Please verify the file exists at: " + ITEMS_FILE);
-            return;
+        System.out.println("Starting Library System...");
+        String snapshotFile = System.getProperty("library.snapshot");
+        if (snapshotFile != null && new File(snapshotFile).exists()) {
+            System.out.println("\nLoading snapshot from: " + snapshotFile);
+            try {
+                library = LibrarySnapshot.load(Paths.get(snapshotFile), false, nodeId);
+            } catch (IOException e) {
+                System.err.println("Error loading snapshot: " + e.getMessage());
+                return;
+            }
+        } else {
+            library = new UniversityLibrary(false, nodeId);
+            if (!importTextFiles(library, itemsFile, membersFile)) {
+                return;
+            }
+            if (snapshotFile != null && !library.getItems().isEmpty()) {
+                try {
+                    LibrarySnapshot.write(library, Paths.get(snapshotFile));
+                    System.out.println("Snapshot written to: " + snapshotFile);
+                } catch (IOException e) {
+                    System.err.println("Error writing snapshot: " + e.getMessage());
+                }
+            }
         }
 
-        if (!new File(MEMBERS_FILE).exists()) {
-            System.err.println("ERROR: Members file not found at specified path");
-            System.err.println("Please verify the file exists at: " + MEMBERS_FILE);
-            return;
+        Integer retention = Integer.getInteger("library.history.retention");
+        if (retention != null) {
+            library.setHistoryRetention(retention);
         }
 
-        System.out.println("\nLoading data files...");
-        loadItemsFromFile(ITEMS_FILE, library);
-        loadMembersFromFile(MEMBERS_FILE, library);
+        Long repairSeed = Long.getLong("library.repair.seed");
+        if (repairSeed != null) {
+            library.getRepairSection().setSeed(repairSeed);
+        }
 
         if (library.getItems().isEmpty()) {
             System.err.println("WARNING: No items were loaded - check items file format");
@@ -61,11 +101,124 @@ public class UniversityLibraryMain {
             return;
         }
 
+        String journalFile = System.getProperty("library.journal");
+        TransactionJournal journal = null;
+        if (journalFile != null) {
+            try {
+                TransactionJournal.FsyncPolicy policy = TransactionJournal.FsyncPolicy.valueOf(
+                        System.getProperty("library.journal.fsync", "PER_OPERATION").toUpperCase());
+                long groupCommitMillis = Long.getLong("library.journal.groupCommitMillis", 10);
+                journal = new TransactionJournal(Paths.get(journalFile), policy, groupCommitMillis);
+                long replayed = library.attachJournal(journal);
+                System.out.println("Replayed " + replayed + " journal records from: " + journalFile);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error opening journal: " + e.getMessage());
+                closeJournal(journal);
+                return;
+            }
+        }
+
+        try {
+            runDemo(library);
+        } finally {
+            closeJournal(journal);
+        }
+    }
+
+    /**
+     * Runs the demonstration operations with the configured metrics export and background repairs,
+     * then prints the operation metrics.
+     *
+     * @param library The initialized library.
+     */
+    private static void runDemo(UniversityLibrary library) {
         System.out.println("\nLibrary initialized with:");
         System.out.println("- " + library.getItems().size() + " items");
         System.out.println("- " + library.getMembers().size() + " members");
 
+        Long exportMillis = Long.getLong("library.metrics.exportMillis");
+        if (exportMillis != null && exportMillis > 0) {
+            library.getMetrics().startPeriodicExport(System.out, exportMillis);
+        }
+
+        int repairWorkers = Integer.getInteger("library.repair.workers", 0);
+        if (repairWorkers > 0) {
+            library.getRepairSection().start(repairWorkers, Executors.defaultThreadFactory(),
+                    Long.getLong("library.repair.cadenceMillis", 100));
+        } else {
+            library.getRepairSection().drain();
+        }
+
         demoLibraryOperations(library);
+
+        if (repairWorkers > 0) {
+            try {
+                library.getRepairSection().shutdown(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        library.getMetrics().stopPeriodicExport();
+        System.out.println();
+        library.getMetrics().export(System.out);
+    }
+
+    /**
+     * Closes the journal, forcing any records that are still outstanding.
+     *
+     * @param journal The journal, or null if none was opened.
+     */
+    private static void closeJournal(TransactionJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imports items and members from the text data files with the parallel loader.
+     *
+     * @param library     The UniversityLibrary instance to populate.
+     * @param itemsFile   The path to the items file.
+     * @param membersFile The path to the members file.
+     * @return True if both files were read, false otherwise.
+     */
+    private static boolean importTextFiles(UniversityLibrary library, String itemsFile, String membersFile) {
+        System.out.println("Items file: " + itemsFile);
+        System.out.println("Members file: " + membersFile);
+
+        if (!new File(itemsFile).exists()) {
+            System.err.println("ERROR: Items file not found at specified path");
+            System.err.println("Please verify the file exists at: " + itemsFile);
+            return false;
+        }
+
+        if (!new File(membersFile).exists()) {
+            System.err.println("ERROR: Members file not found at specified path");
+            System.err.println("Please verify the file exists at: " + membersFile);
+            return false;
+        }
+
+        System.out.println("\nLoading data files...");
+        CatalogLoader loader = new CatalogLoader();
+        try {
+            System.out.println("\nLoading items from: " + itemsFile);
+            System.out.println("Successfully loaded " + loader.loadItems(Paths.get(itemsFile), library) + " items");
+        } catch (IOException e) {
+            System.err.println("Error loading items file: " + e.getMessage());
+        }
+        try {
+            System.out.println("\nLoading members from: " + membersFile);
+            System.out.println("Successfully loaded " + loader.loadMembers(Paths.get(membersFile), library) + " members");
+        } catch (IOException e) {
+            System.err.println("Error loading members file: " + e.getMessage());
+        }
+        return true;
     }
 
     /**
@@ -113,7 +266,10 @@ public class UniversityLibraryMain {
                             continue;
                     }
 
-                    library.addItem(item);
+                    if (!library.addItem(item)) {
+                        System.err.println("Line " + lineNum + ": Skipped - duplicate item id " + id);
+                        continue;
+                    }
                     loadedCount++;
                 } catch (NumberFormatException e) {
                     System.err.println("Line " + lineNum + ": Skipped - invalid number format");
@@ -170,7 +326,10 @@ public class UniversityLibraryMain {
                     }
 
                     if (member != null) {
-                        library.registerMember(member);
+                        if (!library.registerMember(member)) {
+                            System.err.println("Line " + lineNum + ": Skipped - duplicate member id " + member.getId());
+                            continue;
+                        }
                         loadedCount++;
                     }
                 } catch (Exception e) {
@@ -1,17 +1,17 @@
 package library.items;
 
-import java.util.UUID;
+import library.util.IdService;
 
 /**
  * Represents a book in the library system.
- * A book is a type of item that includes an ISBN.
+ * A book is a type of item that includes an ISBN, stored as a 64-bit number.
  * 
  * <p>Extends the {@link Item} class.</p>
  * 
  * @author mianm
  */
 public class Book extends Item {
-    private final String isbn = UUID.randomUUID().toString();
+    private final long isbn;
 
     /**
      * Initializes a new instance of the Book class.
@@ -24,15 +24,40 @@ public class Book extends Item {
      * @param copiesCount The number of copies available in the library.
      */
     public Book(String id, String title, String author, int pageCount, String topic, int copiesCount) {
+        this(IdService.nextId(), id, title, author, pageCount, topic, copiesCount);
+    }
+
+    /**
+     * Initializes a new instance of the Book class with a known ISBN.
+     *
+     * @param isbn        The ISBN of the book.
+     * @param id          The unique ID of the book.
+     * @param title       The title of the book.
+     * @param author      The author of the book.
+     * @param pageCount   The number of pages in the book.
+     * @param topic       The topic of the book.
+     * @param copiesCount The number of copies available in the library.
+     */
+    public Book(long isbn, String id, String title, String author, int pageCount, String topic, int copiesCount) {
         super(id, title, author, pageCount, topic, copiesCount);
+        this.isbn = isbn;
     }
 
     /**
      * Retrieves the ISBN of the book.
      *
-     * @return The ISBN of the book.
+     * @return The display form of the ISBN of the book.
      */
     public String getIsbn() {
+        return IdService.format(isbn);
+    }
+
+    /**
+     * Retrieves the ISBN of the book as a number.
+     *
+     * @return The ISBN of the book.
+     */
+    public long getIsbnValue() {
         return isbn;
     }
 }
\ No newline at end of file
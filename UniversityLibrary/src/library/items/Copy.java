@@ -1,10 +1,14 @@
 package library.items;
 
-import java.util.UUID;
+import library.util.IdService;
 
 /**
  * Represents a physical copy of an item in the library system.
- * Each copy has a unique ID and can be marked as available, damaged, or repaired.
+ * Each copy has a unique 64-bit ID and can be marked as available, damaged, or repaired.
+ * 
+ * <p>A copy also has a number within its item: the first copy of an item that is created is number 1, the next
+ * number 2, and so on. Copies are created in the same order whenever the same circulation is replayed over the
+ * same catalog, so the number identifies a copy across restarts where the generated ID does not.</p>
  * 
  * <p>Used by the {@link Item} class to manage multiple copies of an item.</p>
  * 
@@ -12,31 +16,93 @@ import java.util.UUID;
  */
 public class Copy {
 
-    private final String copyId;
+    private final long copyId;
+    private int number;
     private boolean available;
     private boolean damaged;
     private int damageCount;
+    private Item owner;
+    private int slot;
 
     /**
      * Initializes a new instance of the Copy class.
      * The copy is initially available and undamaged.
      */
     public Copy() {
-        this.copyId = UUID.randomUUID().toString();
+        this.copyId = IdService.nextId();
         this.available = true;
         this.damaged = false;
         this.damageCount = 0;
     }
 
+    /**
+     * Initializes a new instance of the Copy class with previously saved state.
+     * Used when the library is restored from a snapshot.
+     *
+     * @param copyId      The unique ID of the copy.
+     * @param available   True if the copy is available.
+     * @param damaged     True if the copy is damaged.
+     * @param damageCount The damage count of the copy.
+     */
+    public Copy(long copyId, boolean available, boolean damaged, int damageCount) {
+        this.copyId = copyId;
+        this.available = available;
+        this.damaged = damaged;
+        this.damageCount = damageCount;
+    }
+
+    /**
+     * Initializes a new instance of the Copy class with previously saved state, including its number.
+     * Used when the library is restored from a snapshot.
+     *
+     * @param copyId      The unique ID of the copy.
+     * @param number      The number of the copy within its item.
+     * @param available   True if the copy is available.
+     * @param damaged     True if the copy is damaged.
+     * @param damageCount The damage count of the copy.
+     */
+    public Copy(long copyId, int number, boolean available, boolean damaged, int damageCount) {
+        this(copyId, available, damaged, damageCount);
+        this.number = number;
+    }
+
     /**
      * Retrieves the unique ID of the copy.
      *
-     * @return The unique ID of the copy.
+     * @return The display form of the unique ID of the copy.
      */
     public String getCopyId() {
+        return IdService.format(copyId);
+    }
+
+    /**
+     * Retrieves the unique ID of the copy as a number.
+     *
+     * @return The unique ID of the copy.
+     */
+    public long getCopyIdValue() {
         return copyId;
     }
 
+    /**
+     * Retrieves the number of the copy within its item.
+     *
+     * @return The copy number, starting at 1, or 0 if the copy has not been added to an item.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Sets the number of the copy within its item.
+     * Called by the item when a copy without a number is added.
+     *
+     * @param number The copy number.
+     */
+    void setNumber(int number) {
+        this.number = number;
+    }
+
     /**
      * Retrieves the damage count of the copy.
      *
@@ -70,9 +136,52 @@ public class Copy {
      * @param available True to mark the copy as available, false otherwise.
      */
     public void setAvailable(boolean available) {
+        if (owner != null) {
+            owner.setCopyAvailable(this, available);
+        } else {
+            this.available = available;
+        }
+    }
+
+    /**
+     * Records the availability of the copy without telling the owning item.
+     * Used by the owning item, which keeps its own bookkeeping in step.
+     *
+     * @param available True to mark the copy as available, false otherwise.
+     */
+    void markAvailable(boolean available) {
         this.available = available;
     }
 
+    /**
+     * Retrieves the item this copy belongs to.
+     *
+     * @return The owning item, or null if the copy is not part of an item.
+     */
+    Item getOwner() {
+        return owner;
+    }
+
+    /**
+     * Retrieves the position of the copy in the copy list of its item.
+     *
+     * @return The position of the copy.
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Records which item the copy belongs to and where it is stored.
+     *
+     * @param owner The owning item, or null when the copy is removed.
+     * @param slot  The position of the copy in the copy list of its item.
+     */
+    void attach(Item owner, int slot) {
+        this.owner = owner;
+        this.slot = slot;
+    }
+
     /**
      * Checks if the copy is damaged.
      *
@@ -97,4 +206,14 @@ public class Copy {
     public void increaseDamage() {
         this.damageCount++;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the display form of the copy ID.
+     *
+     * @return The copy ID as text.
+     */
+    @Override
+    public String toString() {
+        return IdService.format(copyId);
+    }
+}
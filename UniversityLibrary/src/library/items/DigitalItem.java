@@ -1,17 +1,24 @@
 package library.items;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Represents a digital version of an item in the library system.
  * A digital item tracks the number of views and downloads.
  * 
  * <p>Used by the {@link Item} class to manage digital versions of items.</p>
  * 
+ * <p>The counters are striped {@link LongAdder}s, so views and downloads from many e-reader sessions at once
+ * are all counted without the threads contending on one memory location. Reading a counter sums its
+ * stripes.</p>
+ * 
  * @author mianm
  */
 public class DigitalItem {
     private final String id;
-    private int views;
-    private int downloads;
+    private final LongAdder views;
+    private final LongAdder downloads;
+    private Item owner;
 
     /**
      * Initializes a new instance of the DigitalItem class.
@@ -20,8 +27,8 @@ public class DigitalItem {
      */
     public DigitalItem(String id) {
         this.id = id;
-        this.views = 0;
-        this.downloads = 0;
+        this.views = new LongAdder();
+        this.downloads = new LongAdder();
     }
 
     /**
@@ -38,17 +45,23 @@ public class DigitalItem {
      *
      * @return The number of views.
      */
-    public int getViews() {
-        return views;
+    public long getViews() {
+        return views.sum();
     }
 
     /**
      * Sets the number of views for the digital item.
+     * Not atomic with respect to views counted at the same time; intended for restoring saved counters.
      *
      * @param views The new number of views.
      */
-    public void setViews(int views) {
-        this.views = views;
+    public void setViews(long views) {
+        this.views.reset();
+        this.views.add(views);
+        ItemListener listener = listener();
+        if (listener != null) {
+            listener.digitalVersionChanged(owner);
+        }
     }
 
     /**
@@ -56,30 +69,72 @@ public class DigitalItem {
      *
      * @return The number of downloads.
      */
-    public int getDownloads() {
-        return downloads;
+    public long getDownloads() {
+        return downloads.sum();
     }
 
     /**
      * Sets the number of downloads for the digital item.
+     * Not atomic with respect to downloads counted at the same time; intended for restoring saved counters.
      *
      * @param downloads The new number of downloads.
      */
-    public void setDownloads(int downloads) {
-        this.downloads = downloads;
+    public void setDownloads(long downloads) {
+        this.downloads.reset();
+        this.downloads.add(downloads);
+        ItemListener listener = listener();
+        if (listener != null) {
+            listener.digitalVersionChanged(owner);
+        }
     }
 
     /**
      * Increments the view count for the digital item.
      */
     public void viewDigital() {
-        this.views++;
+        views.increment();
+        ItemListener listener = listener();
+        if (listener != null) {
+            listener.digitalViewsChanged(owner);
+        }
     }
 
     /**
      * Increments the download count for the digital item.
      */
     public void downloadsDigital() {
-        this.downloads++;
+        downloads.increment();
+        ItemListener listener = listener();
+        if (listener != null) {
+            listener.digitalDownloadsChanged(owner);
+        }
+    }
+
+    /**
+     * Retrieves the item this is the digital version of.
+     *
+     * @return The owning item, or null if the digital item is not attached.
+     */
+    public Item getOwner() {
+        return owner;
+    }
+
+    /**
+     * Records the item this is the digital version of.
+     *
+     * @param owner The owning item, or null to detach.
+     */
+    void setOwner(Item owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Retrieves the listener of the owning item.
+     *
+     * @return The listener, or null if there is no owner or it is not catalogued.
+     */
+    private ItemListener listener() {
+        Item item = owner;
+        return item == null ? null : item.getListener();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package library.items;
 
+import library.util.SymbolTable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -9,15 +11,35 @@ import java.util.List;
  * 
  * <p>This class is intended to be extended by specific item types such as books, theses, etc.</p>
  * 
+ * <p>The copies of an item are kept partitioned: the available copies occupy the front of the copy list
+ * and {@code copiesCount} marks where they end. Handing out, taking back and counting copies therefore
+ * only swap or read entries at known positions instead of scanning the list.</p>
+ * 
+ * <p>Copies are created lazily. A new item only counts its copies, and a {@link Copy} with its ID is created
+ * the first time a copy is handed out or the copy list is read. Copies that have never been created are
+ * always available and undamaged, so counting available copies gives the same answer either way. Every copy
+ * is numbered in the order it is created or added, see {@link Copy#getNumber()}.</p>
+ * 
+ * <p>Authors and topics repeat across many items. When an item is catalogued, the library encodes them in its
+ * own {@link SymbolTable}s, so every item in the catalog with the same author or topic returns the same String
+ * instance and can be grouped by an integer code.</p>
+ * 
  * @author mianm
  */
 public abstract class Item {
-    private final String id, title, author, topic;
+    private final String id, title;
+    private String author, topic;
+    private int authorCode, topicCode;
     private final int pageCount;
     private int borrowCount;
-    private List<Copy> copies;
+    private final List<Copy> copies;
+    private final List<Copy> copiesView;
     private DigitalItem digitalVersion;
     private int copiesCount;
+    private int uncreatedCopies;
+    private int numberedCopies;
+    private int ordinal;
+    private ItemListener listener;
 
     /**
      * Initializes a new instance of the Item class.
@@ -35,10 +57,14 @@ public abstract class Item {
         this.author = author;
         this.pageCount = pageCount;
         this.topic = topic;
-        this.copiesCount = copiesCount;
-        this.copies = new ArrayList<>();
+        this.authorCode = -1;
+        this.topicCode = -1;
+        this.copiesCount = 0;
+        this.uncreatedCopies = Math.max(0, copiesCount);
+        this.copies = new ArrayList<>(0);
+        this.copiesView = Collections.unmodifiableList(copies);
         this.borrowCount = 0;
-        makeCopies(copiesCount);
+        this.ordinal = -1;
     }
 
     /**
@@ -47,32 +73,55 @@ public abstract class Item {
      * @return True if a copy was successfully borrowed, false otherwise.
      */
     public boolean borrowResource() {
-        for (Copy c : copies) {
-            if (c.getAvailable()) {
-                c.setAvailable(false);
-                this.borrowCount++;
-                this.copiesCount--;
-                return true;
+        return checkoutCopy() != null;
+    }
+
+    /**
+     * Hands out an available copy of the item.
+     *
+     * @return The copy that was handed out, or null if no copy is available.
+     */
+    public Copy checkoutCopy() {
+        if (copiesCount == 0) {
+            if (uncreatedCopies == 0) {
+                return null;
             }
+            createCopy();
         }
-        return false;
+        Copy c = copies.get(copiesCount - 1);
+        takeCopy(c);
+        setBorrowCount(borrowCount + 1);
+        return c;
     }
 
     /**
      * Returns a copy of the item to the library.
+     * Damaged copies stay unavailable until they are repaired.
      *
      * @param cp The copy being returned.
      */
     public void returnResource(Copy cp) {
-        for (Copy c : copies) {
-            if (c.getCopyId().equals(cp.getCopyId())) {
-                if (!cp.getDamaged()) {
-                    c.setAvailable(true);
-                    this.copiesCount++;
-                }
-                break;
-            }
+        if (cp.getOwner() == this && !cp.getAvailable() && !cp.getDamaged()) {
+            releaseCopy(cp);
+        }
+    }
+
+    /**
+     * Takes back a copy that was handed out, recording damage before the copy is released.
+     * A damaged copy is marked and stays unavailable until it is repaired.
+     *
+     * @param cp      The copy being returned.
+     * @param damaged True if the copy came back damaged.
+     */
+    public void checkinCopy(Copy cp, boolean damaged) {
+        if (cp.getOwner() != this || cp.getAvailable()) {
+            return;
+        }
+        if (damaged) {
+            cp.setDamaged(true);
+            cp.increaseDamage();
         }
+        returnResource(cp);
     }
 
     /**
@@ -102,6 +151,16 @@ public abstract class Item {
         return author;
     }
 
+    /**
+     * Retrieves the code of the author in the author table of the item's catalog.
+     * Items by the same author in the same catalog have the same code.
+     *
+     * @return The author code, or -1 if the item has no author or has not been catalogued.
+     */
+    public int getAuthorCode() {
+        return authorCode;
+    }
+
     /**
      * Retrieves the topic of the item.
      *
@@ -111,6 +170,16 @@ public abstract class Item {
         return topic;
     }
 
+    /**
+     * Retrieves the code of the topic in the topic table of the item's catalog.
+     * Items on the same topic in the same catalog have the same code.
+     *
+     * @return The topic code, or -1 if the item has no topic or has not been catalogued.
+     */
+    public int getTopicCode() {
+        return topicCode;
+    }
+
     /**
      * Retrieves the number of pages in the item.
      *
@@ -135,16 +204,131 @@ public abstract class Item {
      * @param borrowCount The new borrow count.
      */
     public void setBorrowCount(int borrowCount) {
+        int previousCount = this.borrowCount;
         this.borrowCount = borrowCount;
+        if (listener != null && previousCount != borrowCount) {
+            listener.borrowCountChanged(this, previousCount);
+        }
+    }
+
+    /**
+     * Retrieves the position of the item in the catalog it was added to.
+     *
+     * @return The catalog ordinal, or -1 if the item has not been catalogued.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Encodes the author and topic in the symbol tables of a catalog and switches to their shared instances.
+     * Called by the library when the item is added.
+     *
+     * @param authors The author table of the catalog.
+     * @param topics  The topic table of the catalog.
+     */
+    public void encode(SymbolTable authors, SymbolTable topics) {
+        authorCode = authors.intern(author);
+        topicCode = topics.intern(topic);
+        author = authors.value(authorCode);
+        topic = topics.value(topicCode);
+    }
+
+    /**
+     * Sets the position of the item in its catalog.
+     * Called by the library when the item is added.
+     *
+     * @param ordinal The catalog ordinal.
+     */
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Sets the listener that is told about changes to the item.
+     * Called by the library when the item is added; an item reports to one catalog at a time.
+     *
+     * @param listener The listener, or null to stop notifications.
+     */
+    public void setListener(ItemListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Retrieves the listener that is told about changes to the item.
+     *
+     * @return The listener, or null if there is none.
+     */
+    ItemListener getListener() {
+        return listener;
     }
 
     /**
      * Retrieves the list of copies of the item.
+     * The list is read-only, and the order of the copies changes as they are borrowed and returned.
+     * Copies that have not been created yet are created first.
      *
      * @return A list of copies of the item.
      */
     public List<Copy> getCopies() {
-        return copies;
+        while (uncreatedCopies > 0) {
+            createCopy();
+        }
+        return copiesView;
+    }
+
+    /**
+     * Retrieves the copies of the item that have been created so far, without creating the rest.
+     * Every copy that has been handed out, damaged or added explicitly is in this list.
+     *
+     * @return A read-only list of the created copies.
+     */
+    public List<Copy> getCreatedCopies() {
+        return copiesView;
+    }
+
+    /**
+     * Finds a created copy by its number, without creating the copies that are only counted.
+     *
+     * @param number The copy number.
+     * @return The copy, or null if no created copy of the item has that number.
+     */
+    public Copy findCopy(int number) {
+        for (Copy c : copies) {
+            if (c.getNumber() == number) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves how many copy numbers the item has handed out, including those of copies that were removed.
+     *
+     * @return The highest copy number so far.
+     */
+    public int getNumberedCopyCount() {
+        return numberedCopies;
+    }
+
+    /**
+     * Restores how many copy numbers the item has handed out, such as when it is loaded from a snapshot, so
+     * copies created later do not reuse the numbers of removed copies.
+     *
+     * @param numberedCopies The highest copy number so far.
+     */
+    public void restoreNumberedCopyCount(int numberedCopies) {
+        this.numberedCopies = Math.max(this.numberedCopies, numberedCopies);
+    }
+
+    /**
+     * Retrieves the number of copies that are only counted so far.
+     * These copies are available and undamaged.
+     *
+     * @return The number of copies that have not been created yet.
+     */
+    public int getUncreatedCopyCount() {
+        return uncreatedCopies;
     }
 
     /**
@@ -162,7 +346,16 @@ public abstract class Item {
      * @param digitalVersion The digital version to set.
      */
     public void setDigitalVersion(DigitalItem digitalVersion) {
+        if (this.digitalVersion != null && this.digitalVersion.getOwner() == this) {
+            this.digitalVersion.setOwner(null);
+        }
         this.digitalVersion = digitalVersion;
+        if (digitalVersion != null) {
+            digitalVersion.setOwner(this);
+        }
+        if (listener != null) {
+            listener.digitalVersionChanged(this);
+        }
     }
 
     /**
@@ -171,15 +364,26 @@ public abstract class Item {
      * @return The number of available copies.
      */
     public int getCopiesCount() {
-        return copiesCount;
+        return copiesCount + uncreatedCopies;
     }
 
     /**
      * Adds a new copy of the item to the library.
      */
     public void addNewCopy() {
-        copies.add(new Copy());
-        copiesCount++;
+        attachCopy(new Copy(), true);
+    }
+
+    /**
+     * Adds an existing copy, such as one restored from a snapshot, to the item.
+     *
+     * @param copy The copy to add; it must not belong to another item.
+     */
+    public void addCopy(Copy copy) {
+        if (copy.getOwner() != null) {
+            throw new IllegalArgumentException("Copy " + copy + " already belongs to an item");
+        }
+        attachCopy(copy, true);
     }
 
     /**
@@ -187,7 +391,7 @@ public abstract class Item {
      */
     public void createDigVersion() {
         if (this.digitalVersion == null) {
-            digitalVersion = new DigitalItem(this.id);
+            setDigitalVersion(new DigitalItem(this.id));
         }
     }
 
@@ -200,8 +404,16 @@ public abstract class Item {
     public void repair(Copy c) {
         if (c.getDamageCount() <= 5) {
             c.setDamaged(false);
-        } else {
-            copies.remove(c);
+        } else if (c.getOwner() == this) {
+            if (c.getAvailable()) {
+                takeCopy(c);
+            }
+            Copy last = copies.remove(copies.size() - 1);
+            if (last != c) {
+                copies.set(c.getSlot(), last);
+                last.attach(this, c.getSlot());
+            }
+            c.attach(null, 0);
         }
     }
 
@@ -211,23 +423,110 @@ public abstract class Item {
      * @return The number of available copies.
      */
     public int AvailableCopyCount() {
-        int count = 0;
-        for (Copy c : copies) {
-            if (c.getAvailable()) {
-                count++;
+        return copiesCount + uncreatedCopies;
+    }
+
+    /**
+     * Changes the availability of one of the item's copies, keeping the available copies at the front.
+     * Called by {@link Copy#setAvailable(boolean)}.
+     *
+     * @param c         The copy.
+     * @param available True to make the copy available, false otherwise.
+     */
+    void setCopyAvailable(Copy c, boolean available) {
+        if (c.getAvailable() == available) {
+            return;
+        }
+        if (available) {
+            releaseCopy(c);
+        } else {
+            takeCopy(c);
+        }
+    }
+
+    /**
+     * Marks an available copy as unavailable by moving it just past the available copies.
+     *
+     * @param c The copy to take.
+     */
+    private void takeCopy(Copy c) {
+        copiesCount--;
+        swapCopies(c.getSlot(), copiesCount);
+        c.markAvailable(false);
+        availableCopiesChanged(getCopiesCount() + 1);
+    }
+
+    /**
+     * Marks an unavailable copy as available by moving it to the end of the available copies.
+     *
+     * @param c The copy to release.
+     */
+    private void releaseCopy(Copy c) {
+        swapCopies(c.getSlot(), copiesCount);
+        copiesCount++;
+        c.markAvailable(true);
+        availableCopiesChanged(getCopiesCount() - 1);
+    }
+
+    /**
+     * Exchanges the copies stored at two positions.
+     *
+     * @param a The first position.
+     * @param b The second position.
+     */
+    private void swapCopies(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        Copy first = copies.get(a);
+        Copy second = copies.get(b);
+        copies.set(a, second);
+        copies.set(b, first);
+        second.attach(this, a);
+        first.attach(this, b);
+    }
+
+    /**
+     * Adds a copy to the end of the copy list and moves it among the available copies if it is available.
+     * A copy without a number gets the next one.
+     *
+     * @param c      The copy to add.
+     * @param notify True to tell the listener if the number of available copies went up.
+     */
+    private void attachCopy(Copy c, boolean notify) {
+        if (c.getNumber() == 0) {
+            c.setNumber(++numberedCopies);
+        } else {
+            numberedCopies = Math.max(numberedCopies, c.getNumber());
+        }
+        c.attach(this, copies.size());
+        copies.add(c);
+        if (c.getAvailable()) {
+            swapCopies(c.getSlot(), copiesCount);
+            copiesCount++;
+            if (notify) {
+                availableCopiesChanged(getCopiesCount() - 1);
             }
         }
-        return count;
     }
 
     /**
-     * Creates the specified number of copies for the item.
+     * Creates one of the copies that have only been counted so far.
+     * The number of available copies stays the same, so the listener is not told.
+     */
+    private void createCopy() {
+        uncreatedCopies--;
+        attachCopy(new Copy(), false);
+    }
+
+    /**
+     * Tells the listener that the number of available copies has changed.
      *
-     * @param copiesCount The number of copies to create.
+     * @param previousCount The number of available copies before the change.
      */
-    private void makeCopies(int copiesCount) {
-        for (int i = 0; i < copiesCount; i++) {
-            copies.add(new Copy());
+    private void availableCopiesChanged(int previousCount) {
+        if (listener != null) {
+            listener.availableCopiesChanged(this, previousCount);
         }
     }
 }
\ No newline at end of file
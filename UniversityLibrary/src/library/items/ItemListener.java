@@ -0,0 +1,55 @@
+package library.items;
+
+/**
+ * Receives notifications about changes to an {@link Item} that catalogue-wide structures need to track.
+ * 
+ * <p>The library installs a listener on every item it catalogues, so that rankings and indexes are kept
+ * current as borrows, returns, views and downloads happen instead of being rebuilt from the item list.</p>
+ * 
+ * @author mianm
+ */
+public interface ItemListener {
+
+    /**
+     * Called after the borrow count of an item has changed.
+     *
+     * @param item          The item whose borrow count changed.
+     * @param previousCount The borrow count before the change.
+     */
+    void borrowCountChanged(Item item, int previousCount);
+
+    /**
+     * Called after the number of available copies of an item has changed, because a copy was handed out,
+     * taken back, repaired, added or removed.
+     *
+     * @param item          The item whose available copies changed.
+     * @param previousCount The number of available copies before the change.
+     */
+    default void availableCopiesChanged(Item item, int previousCount) {
+    }
+
+    /**
+     * Called after a view of the digital version of an item has been counted.
+     *
+     * @param item The item that was viewed.
+     */
+    default void digitalViewsChanged(Item item) {
+    }
+
+    /**
+     * Called after a download of the digital version of an item has been counted.
+     *
+     * @param item The item that was downloaded.
+     */
+    default void digitalDownloadsChanged(Item item) {
+    }
+
+    /**
+     * Called after the digital version of an item was attached or replaced, or its counters were set.
+     * The counters may have gone down.
+     *
+     * @param item The item whose digital version changed.
+     */
+    default void digitalVersionChanged(Item item) {
+    }
+}
@@ -0,0 +1,164 @@
+package library.members;
+
+import library.util.IntList;
+import java.util.Arrays;
+
+/**
+ * A compact record of the items a member has borrowed and returned, stored as item ordinals.
+ * 
+ * <p>The ordinals are kept in a ring buffer of primitive ints that grows as needed up to the retention
+ * limit. Once the limit is reached, each new entry replaces the oldest one, so a long-standing account keeps
+ * only its most recent history. The history does not hold references to the items themselves.</p>
+ * 
+ * @author mianm
+ */
+public class BorrowHistory {
+    /** The retention limit that keeps every entry. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ordinals;
+    private int head;
+    private int size;
+    private int retention;
+    private long recorded;
+
+    /**
+     * Initializes a new, empty instance of the BorrowHistory class that keeps every entry.
+     */
+    public BorrowHistory() {
+        this(UNLIMITED);
+    }
+
+    /**
+     * Initializes a new, empty instance of the BorrowHistory class.
+     *
+     * @param retention The number of most recent entries to keep.
+     */
+    public BorrowHistory(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Retention must be at least 1: " + retention);
+        }
+        this.ordinals = EMPTY;
+        this.retention = retention;
+    }
+
+    /**
+     * Records a borrowed item, dropping the oldest entry if the history is full.
+     *
+     * @param ordinal The catalog ordinal of the item.
+     */
+    public void add(int ordinal) {
+        recorded++;
+        if (size == retention) {
+            ordinals[head] = ordinal;
+            head = (head + 1) % ordinals.length;
+            return;
+        }
+        if (size == ordinals.length) {
+            grow();
+        }
+        ordinals[(head + size) % ordinals.length] = ordinal;
+        size++;
+    }
+
+    /**
+     * Retrieves a retained entry.
+     *
+     * @param index The position of the entry, 0 being the oldest retained one.
+     * @return The item ordinal.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ordinals[(head + index) % ordinals.length];
+    }
+
+    /**
+     * Retrieves a page of retained entries, oldest first.
+     *
+     * @param offset The position of the first entry of the page.
+     * @param count  The largest number of entries to return.
+     * @return The item ordinals of the page, empty if the offset is past the end.
+     */
+    public IntList page(int offset, int count) {
+        int end = (int) Math.min(size, (long) Math.max(0, offset) + Math.max(0, count));
+        IntList result = new IntList(Math.max(1, end - offset));
+        for (int i = Math.max(0, offset); i < end; i++) {
+            result.add(ordinals[(head + i) % ordinals.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the number of retained entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of entries ever recorded, including those dropped by the retention limit.
+     *
+     * @return The number of recorded entries.
+     */
+    public long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * Retrieves the retention limit.
+     *
+     * @return The number of most recent entries kept.
+     */
+    public int getRetention() {
+        return retention;
+    }
+
+    /**
+     * Changes the retention limit, dropping the oldest entries if the history is now too long.
+     *
+     * @param retention The number of most recent entries to keep.
+     */
+    public void setRetention(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Retention must be at least 1: " + retention);
+        }
+        int drop = Math.max(0, size - retention);
+        int[] kept = new int[Math.min(ordinals.length, retention)];
+        for (int i = 0; i < size - drop; i++) {
+            kept[i] = ordinals[(head + drop + i) % ordinals.length];
+        }
+        this.ordinals = kept;
+        this.head = 0;
+        this.size -= drop;
+        this.retention = retention;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        ordinals = EMPTY;
+        head = 0;
+        size = 0;
+        recorded = 0;
+    }
+
+    /**
+     * Doubles the buffer, up to the retention limit, and unwraps the entries to its start.
+     */
+    private void grow() {
+        int capacity = (int) Math.min(retention, Math.max(4L, ordinals.length * 2L));
+        int[] grown = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            grown[i] = ordinals[(head + i) % ordinals.length];
+        }
+        ordinals = grown;
+        head = 0;
+    }
+}
@@ -1,6 +1,6 @@
 package library.members;
 
-import java.util.UUID;
+import library.util.IdService;
 
 /**
  * Represents a faculty member in the library system.
@@ -11,7 +11,7 @@ import java.util.UUID;
  * @author mianm
  */
 public class Faculty extends Member {
-    private final String facultyId = UUID.randomUUID().toString();
+    private final long facultyId;
 
     /**
      * Initializes a new instance of the Faculty class.
@@ -21,15 +21,37 @@ public class Faculty extends Member {
      * @param email The email address of the faculty member.
      */
     public Faculty(String id, String name, String email) {
+        this(id, name, email, IdService.nextId());
+    }
+
+    /**
+     * Initializes a new instance of the Faculty class with a known faculty ID.
+     *
+     * @param id        The unique ID of the faculty member.
+     * @param name      The name of the faculty member.
+     * @param email     The email address of the faculty member.
+     * @param facultyId The unique faculty ID.
+     */
+    public Faculty(String id, String name, String email, long facultyId) {
         super(id, name, email);
+        this.facultyId = facultyId;
     }
 
     /**
      * Retrieves the unique faculty ID.
      *
-     * @return The unique faculty ID.
+     * @return The display form of the unique faculty ID.
      */
     public String getFacultyId() {
+        return IdService.format(facultyId);
+    }
+
+    /**
+     * Retrieves the faculty ID as a number.
+     *
+     * @return The faculty ID.
+     */
+    public long getFacultyIdValue() {
         return facultyId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package library.members;
+
+import library.items.Copy;
+import library.items.Item;
+
+/**
+ * Represents one item that a member currently has on loan.
+ * A loan binds the member, the item and the exact copy that was handed out, so the same copy is taken back
+ * when the item is returned.
+ * 
+ * @author mianm
+ */
+public class Loan {
+    private final Member member;
+    private final Item item;
+    private final Copy copy;
+    private int slot;
+    private Loan previous;
+
+    /**
+     * Initializes a new instance of the Loan class.
+     *
+     * @param member The member holding the copy.
+     * @param item   The item that was borrowed.
+     * @param copy   The copy that was handed out.
+     */
+    public Loan(Member member, Item item, Copy copy) {
+        this.member = member;
+        this.item = item;
+        this.copy = copy;
+    }
+
+    /**
+     * Retrieves the member holding the copy.
+     *
+     * @return The member.
+     */
+    public Member getMember() {
+        return member;
+    }
+
+    /**
+     * Retrieves the item that was borrowed.
+     *
+     * @return The item.
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    /**
+     * Retrieves the copy that was handed out.
+     *
+     * @return The copy.
+     */
+    public Copy getCopy() {
+        return copy;
+    }
+
+    /**
+     * Retrieves the position of the loan in the member's list of loans.
+     *
+     * @return The position.
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sets the position of the loan in the member's list of loans.
+     *
+     * @param slot The position.
+     */
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Retrieves an older loan of the same item by the same member.
+     *
+     * @return The older loan, or null if there is none.
+     */
+    Loan getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Links an older loan of the same item by the same member.
+     *
+     * @param previous The older loan, or null.
+     */
+    void setPrevious(Loan previous) {
+        this.previous = previous;
+    }
+}
@@ -2,8 +2,14 @@ package library.members;
 
 import library.items.Item;
 import library.items.Copy;
+import library.util.IntList;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * Represents a library member.
@@ -11,13 +17,26 @@ import java.util.List;
  * 
  * <p>This class is intended to be extended by specific member types such as students, faculty, etc.</p>
  * 
+ * <p>Every item a member holds is recorded as a {@link Loan} of the exact copy handed out. The loans are
+ * indexed by item, so a return finds its loan and copy directly instead of searching the member's items and
+ * the item's copies.</p>
+ * 
+ * <p>Returned items are recorded in a {@link BorrowHistory} of item ordinals rather than a list of items.
+ * The library the member is registered with resolves the ordinals when the history is read.</p>
+ * 
  * @author mianm
  */
 public class Member {
     private final String id, name, email;
+    private final List<Loan> loans;
+    private final Map<Item, Loan> loansByItem;
+    private final List<Loan> loansView;
     private final List<Item> currBorrowedItems;
+    private final BorrowHistory borrowHistory;
     private final List<Item> allBorrowedItems;
+    private IntFunction<Item> itemResolver;
     private int totborrowCount, borrowLimit, loyalityPoints;
+    private int ordinal;
 
     /**
      * Initializes a new instance of the Member class.
@@ -33,8 +52,33 @@ public class Member {
         this.totborrowCount = 0;
         this.borrowLimit = 3;
         this.loyalityPoints = 0;
-        this.currBorrowedItems = new ArrayList<>();
-        this.allBorrowedItems = new ArrayList<>();
+        this.loans = new ArrayList<>();
+        this.loansByItem = new HashMap<>();
+        this.loansView = Collections.unmodifiableList(loans);
+        this.currBorrowedItems = new AbstractList<Item>() {
+            @Override
+            public Item get(int index) {
+                return loans.get(index).getItem();
+            }
+
+            @Override
+            public int size() {
+                return loans.size();
+            }
+        };
+        this.borrowHistory = new BorrowHistory();
+        this.allBorrowedItems = new AbstractList<Item>() {
+            @Override
+            public Item get(int index) {
+                return resolveItem(borrowHistory.get(index));
+            }
+
+            @Override
+            public int size() {
+                return borrowHistory.size();
+            }
+        };
+        this.ordinal = -1;
     }
 
     /**
@@ -44,43 +88,185 @@ public class Member {
      * @return True if the item was successfully borrowed, false otherwise.
      */
     public boolean borrowResource(Item res) {
-        if (currBorrowedItems.size() < borrowLimit && res.borrowResource()) {
-            currBorrowedItems.add(res);
-            return true;
+        if (loans.size() >= borrowLimit) {
+            return false;
         }
-        return false;
+        Copy copy = res.checkoutCopy();
+        if (copy == null) {
+            return false;
+        }
+        addLoan(new Loan(this, res, copy));
+        return true;
+    }
+
+    /**
+     * Checks whether {@link #borrowResource(Item)} would succeed without changing anything.
+     *
+     * @param res The item to be borrowed.
+     * @return True if the member is below their borrow limit and the item has an available copy.
+     */
+    public boolean canBorrow(Item res) {
+        return loans.size() < borrowLimit && res.getCopiesCount() > 0;
+    }
+
+    /**
+     * Checks whether {@link #returnResource(Item, boolean)} would take a copy back without changing anything.
+     *
+     * @param res The item to be returned.
+     * @return True if the member holds a copy of the item.
+     */
+    public boolean hasBorrowed(Item res) {
+        return loansByItem.containsKey(res);
     }
 
     /**
      * Returns an item to the library.
+     * The copy of the member's most recent loan of the item is taken back; if the item is damaged, the copy is
+     * marked damaged before it is released. A catalogued item is added to the borrowing history.
      *
      * @param res    The item to be returned.
      * @param damage True if the item is damaged, false otherwise.
+     * @return The copy that was taken back, or null if the member does not hold the item.
      */
-    public void returnResource(Item res, boolean damage) {
-        List<Item> itemsToRemove = new ArrayList<>();
-        for (Item i : currBorrowedItems) {
-            if (i.getId().equals(res.getId())) {
-                itemsToRemove.add(i);
-                allBorrowedItems.add(i);
-                totborrowCount++;
-                for (Copy cp : i.getCopies()) {
-                    if (!cp.getAvailable()) {
-                        i.returnResource(cp);
-                        if (damage) {
-                            cp.setDamaged(true);
-                            cp.increaseDamage();
-                        }
-                        break;
-                    }
-                }
-                if (!damage && totborrowCount % 3 == 0) {
-                    loyalityPoints++;
-                    borrowLimit++;
-                }
-            }
+    public Copy returnResource(Item res, boolean damage) {
+        Loan loan = loansByItem.get(res);
+        if (loan == null) {
+            return null;
+        }
+        removeLoan(loan);
+        if (res.getOrdinal() >= 0) {
+            borrowHistory.add(res.getOrdinal());
+        }
+        totborrowCount++;
+        res.checkinCopy(loan.getCopy(), damage);
+        if (!damage && totborrowCount % 3 == 0) {
+            loyalityPoints++;
+            borrowLimit++;
+        }
+        return loan.getCopy();
+    }
+
+    /**
+     * Records a loan, making it the most recent loan of its item.
+     *
+     * @param loan The loan.
+     */
+    private void addLoan(Loan loan) {
+        loan.setSlot(loans.size());
+        loan.setPrevious(loansByItem.put(loan.getItem(), loan));
+        loans.add(loan);
+    }
+
+    /**
+     * Removes the most recent loan of an item by moving the last loan into its place.
+     *
+     * @param loan The loan, which must be the most recent loan of its item.
+     */
+    private void removeLoan(Loan loan) {
+        if (loan.getPrevious() != null) {
+            loansByItem.put(loan.getItem(), loan.getPrevious());
+        } else {
+            loansByItem.remove(loan.getItem());
+        }
+        Loan last = loans.remove(loans.size() - 1);
+        if (last != loan) {
+            loans.set(loan.getSlot(), last);
+            last.setSlot(loan.getSlot());
+        }
+        loan.setPrevious(null);
+    }
+
+    /**
+     * Restores the borrowing state of the member, such as when the library is loaded from a snapshot.
+     *
+     * @param totborrowCount  The number of items the member has returned.
+     * @param borrowLimit     The number of items the member may hold at once.
+     * @param loyalityPoints  The loyalty points of the member.
+     * @param currentCopies   The copies the member currently holds; each must belong to an item.
+     * @param currentItems    The items of those copies, in the same order.
+     * @param borrowedItems   The catalogued items the member has borrowed and returned, oldest first.
+     */
+    public void restoreState(int totborrowCount, int borrowLimit, int loyalityPoints,
+            List<Copy> currentCopies, List<Item> currentItems, List<Item> borrowedItems) {
+        this.totborrowCount = totborrowCount;
+        this.borrowLimit = borrowLimit;
+        this.loyalityPoints = loyalityPoints;
+        loans.clear();
+        loansByItem.clear();
+        for (int i = 0; i < currentCopies.size(); i++) {
+            addLoan(new Loan(this, currentItems.get(i), currentCopies.get(i)));
+        }
+        borrowHistory.clear();
+        for (Item item : borrowedItems) {
+            borrowHistory.add(item.getOrdinal());
+        }
+    }
+
+    /**
+     * Retrieves the position of the member in the library they were registered with.
+     *
+     * @return The member ordinal, or -1 if the member has not been registered.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Sets the position of the member in their library.
+     * Called by the library when the member is registered.
+     *
+     * @param ordinal The member ordinal.
+     */
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Sets how the ordinals of the borrowing history are turned back into items.
+     * Called by the library when the member is registered.
+     *
+     * @param itemResolver Looks up a catalogued item by ordinal.
+     */
+    public void setItemResolver(IntFunction<Item> itemResolver) {
+        this.itemResolver = itemResolver;
+    }
+
+    /**
+     * Retrieves the compact borrowing history, which also controls how many entries are kept.
+     *
+     * @return The borrowing history.
+     */
+    public BorrowHistory getBorrowHistory() {
+        return borrowHistory;
+    }
+
+    /**
+     * Retrieves a page of the items the member has borrowed and returned, oldest first.
+     *
+     * @param offset The position of the first item of the page.
+     * @param count  The largest number of items to return.
+     * @return The items of the page.
+     */
+    public List<Item> getBorrowedItemsPage(int offset, int count) {
+        IntList page = borrowHistory.page(offset, count);
+        List<Item> result = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            result.add(resolveItem(page.get(i)));
         }
-        currBorrowedItems.removeAll(itemsToRemove);
+        return result;
+    }
+
+    /**
+     * Looks up an item of the borrowing history.
+     *
+     * @param ordinal The catalog ordinal of the item.
+     * @return The item.
+     */
+    private Item resolveItem(int ordinal) {
+        if (itemResolver == null) {
+            throw new IllegalStateException("Member " + id + " is not registered with a library");
+        }
+        return itemResolver.apply(ordinal);
     }
 
     // Getters with Javadoc omitted for brevity
@@ -101,6 +287,10 @@ public class Member {
         return currBorrowedItems;
     }
 
+    public List<Loan> getLoans() {
+        return loansView;
+    }
+
     public List<Item> getAllBorrowedItems() {
         return allBorrowedItems;
     }
@@ -0,0 +1,26 @@
+package library.members;
+
+import library.items.Copy;
+import library.items.Item;
+
+/**
+ * Receives the outcome of every repair decision made by the {@link RepairSection}.
+ * 
+ * <p>The outcome of a repair is derived from the seed of the repair section, the item ID, the copy number, the
+ * damage count of the copy and the repair attempt. The seed is drawn anew for every run unless it is set, so
+ * anything that must reproduce the state of the library later, such as the transaction journal, records the
+ * outcome through this listener instead of deciding it again.</p>
+ * 
+ * @author mianm
+ */
+public interface RepairListener {
+
+    /**
+     * Called after the repair section has decided what happens to a damaged copy.
+     *
+     * @param item     The item that was sent for repair.
+     * @param copy     The damaged copy.
+     * @param archived True if the item was archived, false if the copy was repaired.
+     */
+    void repairDecided(Item item, Copy copy, boolean archived);
+}
@@ -2,81 +2,440 @@ package library.members;
 
 import library.items.Item;
 import library.items.Copy;
+import library.util.MetricsRegistry;
+import library.util.StripedLock;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Represents the repair section of the library.
  * Handles the repair and archiving of damaged items.
- * 
+ *
  * <p>Used by the {@link UniversityLibrary} class to manage damaged items.</p>
- * 
+ *
+ * <p>Damaged copies are put on a queue of pending repairs. Once {@link #start} has been called, requests only
+ * enqueue the copy, and a scheduler hands the queue to a pool of worker threads at a fixed cadence, so returns
+ * never wait for repair work. Any {@link ThreadFactory} can supply the workers, including one that creates
+ * virtual threads.</p>
+ *
+ * <p>Before {@link #start} is called, and again after {@link #shutdown}, there are no workers and the queue is
+ * worked off on the thread that requested the repair, so a damaged return does wait for its repair. This
+ * inline mode keeps single-threaded use and tests working without a thread pool; anything that needs returns
+ * not to block must start the section first.</p>
+ *
+ * <p>Whether a copy is repaired or its item archived is decided by hashing the seed with the item ID, the copy
+ * number, its damage count and the number of times it has been sent back from the archive. None of these
+ * depend on generated IDs or on thread timing, so with a fixed seed the same catalog and circulation get the
+ * same outcomes in every run, whichever worker happens to take a copy off the queue. Copies whose item was
+ * archived are remembered, and {@link #periodicRepair()} sends exactly those back to the queue.</p>
+ *
  * @author mianm
  */
 public class RepairSection {
+    private static final double ARCHIVE_PROBABILITY = 0.3;
+
     private int repairCount;
     private final List<Item> archivedItems;
+    private final List<PendingRepair> archivedCopies;
+    private final Queue<PendingRepair> queue;
+    private StripedLock itemLocks;
+    private RepairListener listener;
+    private MetricsRegistry.Operation repairMetrics;
+    private LongAdder archivedCounter;
+    private volatile long seed;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
 
     /**
      * Initializes a new instance of the RepairSection class.
      */
     public RepairSection() {
         this.archivedItems = new ArrayList<>();
+        this.archivedCopies = new ArrayList<>();
+        this.queue = new ConcurrentLinkedQueue<>();
         this.repairCount = 0;
+        this.seed = System.nanoTime();
     }
 
     /**
-     * Requests a repair for a damaged item.
+     * Requests a repair for every damaged copy of an item.
      * Some items may be archived instead of repaired.
+     * Without started workers the repair is processed before this method returns.
      *
      * @param item The item to be repaired.
      */
     public void requestRepair(Item item) {
-        repairCount++;
-        double random = Math.random();
-        if (random <= 0.3) {
-            archivedItems.add(item);
-        } else {
-            for (Copy c : item.getCopies()) {
-                if (c.getDamaged()) {
-                    c.setDamaged(false);
-                    c.setAvailable(true);
+        for (Copy c : item.getCreatedCopies()) {
+            if (c.getDamaged()) {
+                queue.add(new PendingRepair(item, c, 0));
+            }
+        }
+        drainIfInline();
+    }
+
+    /**
+     * Requests a repair for a damaged copy.
+     * The item of the copy may be archived instead.
+     * Without started workers the repair is processed before this method returns.
+     *
+     * @param item The item the copy belongs to.
+     * @param copy The damaged copy.
+     */
+    public void requestRepair(Item item, Copy copy) {
+        queue.add(new PendingRepair(item, copy, 0));
+        drainIfInline();
+    }
+
+    /**
+     * Starts working off the repair queue in the background.
+     *
+     * @param workerCount   The number of worker threads that process the queue.
+     * @param threadFactory Creates the worker threads.
+     * @param cadenceMillis The interval between two passes over the queue.
+     */
+    public synchronized void start(int workerCount, ThreadFactory threadFactory, long cadenceMillis) {
+        if (workers != null) {
+            throw new IllegalStateException("The repair section is already running");
+        }
+        if (workerCount < 1 || cadenceMillis < 1) {
+            throw new IllegalArgumentException("Worker count and cadence must be positive");
+        }
+        workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "repair-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        ExecutorService pool = workers;
+        scheduler.scheduleWithFixedDelay(() -> {
+            for (int i = 0; i < workerCount && !queue.isEmpty(); i++) {
+                pool.execute(this::drain);
+            }
+        }, cadenceMillis, cadenceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background workers and works off whatever is still queued on the calling thread.
+     *
+     * @param timeout How long to wait for the workers to finish their current pass.
+     * @param unit    The unit of the timeout.
+     * @throws InterruptedException If the wait is interrupted.
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        ScheduledExecutorService stoppedScheduler;
+        ExecutorService stoppedWorkers;
+        synchronized (this) {
+            stoppedScheduler = scheduler;
+            stoppedWorkers = workers;
+            scheduler = null;
+            workers = null;
+        }
+        if (stoppedScheduler != null) {
+            stoppedScheduler.shutdownNow();
+            stoppedWorkers.shutdown();
+            stoppedWorkers.awaitTermination(timeout, unit);
+        }
+        drain();
+    }
+
+    /**
+     * Works off every queued repair on the calling thread.
+     *
+     * @return The number of repairs processed.
+     */
+    public int drain() {
+        int processed = 0;
+        PendingRepair pending;
+        while ((pending = queue.poll()) != null) {
+            process(pending);
+            processed++;
+        }
+        return processed;
+    }
+
+    /**
+     * Applies a repair outcome that has already been decided to one copy.
+     * Used directly when the outcome is replayed from the transaction journal.
+     *
+     * @param item     The item the copy belongs to.
+     * @param copy     The damaged copy.
+     * @param archived True to archive the item, false to repair the copy.
+     */
+    public void applyRepair(Item item, Copy copy, boolean archived) {
+        applyRepair(new PendingRepair(item, copy, 0), archived);
+    }
+
+    /**
+     * Queues every damaged copy of the items that is neither queued nor waiting in the archive.
+     * The pending queue is not saved anywhere, so after a restart this finds the copies whose repair had not
+     * been decided yet. The copies are only queued; they are processed by the workers once the section is
+     * started, or by the next {@link #drain()}. Meant for startup, while no repair is being processed.
+     *
+     * @param items The catalogued items.
+     * @return The number of copies queued.
+     */
+    public int requeueDamaged(List<Item> items) {
+        Set<Copy> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PendingRepair pending : queue) {
+            known.add(pending.copy);
+        }
+        synchronized (archivedItems) {
+            for (PendingRepair pending : archivedCopies) {
+                known.add(pending.copy);
+            }
+        }
+        int queued = 0;
+        for (Item item : items) {
+            for (Copy c : item.getCreatedCopies()) {
+                if (c.getDamaged() && known.add(c)) {
+                    queue.add(new PendingRepair(item, c, 0));
+                    queued++;
                 }
             }
         }
+        return queued;
     }
 
     /**
      * Performs periodic repairs on archived items.
+     * The damaged copies of archived items are sent back to the repair queue.
      */
     public void periodicRepair() {
-        List<Item> itemsToRepair = new ArrayList<>(archivedItems);
-        for (Item i : itemsToRepair) {
-            List<Copy> copies = new ArrayList<>(i.getCopies());
-            for (Copy c : copies) {
-                if (c.getDamaged()) {
-                    requestRepair(i);
-                    break;
+        List<PendingRepair> retry;
+        synchronized (archivedItems) {
+            retry = new ArrayList<>(archivedCopies);
+            archivedCopies.clear();
+        }
+        for (PendingRepair pending : retry) {
+            if (pending.copy.getDamaged()) {
+                queue.add(pending);
+            }
+        }
+        drainIfInline();
+    }
+
+    /**
+     * Sets the seed that repair outcomes are derived from.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Retrieves the number of repairs waiting to be processed.
+     *
+     * @return The number of queued repairs.
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Checks whether repairs are worked off in the background.
+     *
+     * @return True once {@link #start} has been called and until {@link #shutdown} is called.
+     */
+    public synchronized boolean isRunning() {
+        return workers != null;
+    }
+
+    /**
+     * Sets the item locks that circulation uses, so repairs do not race with borrows of the same item.
+     *
+     * @param itemLocks The item locks of the library, or null if the library is not shared between threads.
+     */
+    public void setItemLocks(StripedLock itemLocks) {
+        this.itemLocks = itemLocks;
+    }
+
+    /**
+     * Restores the state of the repair section, such as when the library is loaded from a snapshot.
+     * The damaged copies of the archived items are remembered for the next periodic repair.
+     *
+     * @param repairCount   The total number of repairs performed.
+     * @param archivedItems The archived items.
+     */
+    public void restoreState(int repairCount, List<Item> archivedItems) {
+        synchronized (this.archivedItems) {
+            this.repairCount = repairCount;
+            this.archivedItems.clear();
+            this.archivedItems.addAll(archivedItems);
+            this.archivedCopies.clear();
+            for (Item item : archivedItems) {
+                for (Copy c : item.getCreatedCopies()) {
+                    if (c.getDamaged()) {
+                        archivedCopies.add(new PendingRepair(item, c, 1));
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Sets where processed repairs are timed and counted.
+     * A repair is recorded as successful if the copy was repaired, and as failed if its item was archived.
+     *
+     * @param repairMetrics   The timer of single repairs, or null to stop timing.
+     * @param archivedCounter Counts the repairs that ended with the item archived, or null to stop counting.
+     */
+    public void setMetrics(MetricsRegistry.Operation repairMetrics, LongAdder archivedCounter) {
+        this.repairMetrics = repairMetrics;
+        this.archivedCounter = archivedCounter;
+    }
+
+    /**
+     * Sets the listener that is told about every repair outcome.
+     *
+     * @param listener The listener, or null to stop notifications.
+     */
+    public void setRepairListener(RepairListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Retrieves the total number of repairs performed.
      *
      * @return The total number of repairs.
      */
     public int getRepairCount() {
-        return repairCount;
+        synchronized (archivedItems) {
+            return repairCount;
+        }
     }
 
     /**
      * Retrieves the list of archived items.
      *
-     * @return The list of archived items.
+     * @return A copy of the list of archived items, taken while no repair is being applied.
      */
     public List<Item> getArchivedItems() {
-        return archivedItems;
+        synchronized (archivedItems) {
+            return new ArrayList<>(archivedItems);
+        }
+    }
+
+    /**
+     * Works off the queue right away unless background workers have been started.
+     */
+    private void drainIfInline() {
+        if (!isRunning()) {
+            drain();
+        }
+    }
+
+    /**
+     * Decides and applies the outcome of one queued repair and reports it.
+     *
+     * @param pending The queued repair.
+     */
+    private void process(PendingRepair pending) {
+        long start = System.nanoTime();
+        boolean archived = isArchived(pending);
+        applyRepair(pending, archived);
+        RepairListener current = listener;
+        if (current != null) {
+            current.repairDecided(pending.item, pending.copy, archived);
+        }
+        MetricsRegistry.Operation timer = repairMetrics;
+        if (timer != null) {
+            timer.record(start, !archived);
+        }
+        LongAdder counter = archivedCounter;
+        if (archived && counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Applies a decided outcome to one copy.
+     *
+     * @param pending  The repair.
+     * @param archived True to archive the item, false to repair the copy.
+     */
+    private void applyRepair(PendingRepair pending, boolean archived) {
+        synchronized (archivedItems) {
+            repairCount++;
+            if (archived) {
+                archivedItems.add(pending.item);
+                archivedCopies.add(new PendingRepair(pending.item, pending.copy, pending.attempt + 1));
+                return;
+            }
+        }
+        repairCopy(pending.item, pending.copy);
+    }
+
+    /**
+     * Clears the damage of a copy and puts it back into circulation under the item's lock.
+     *
+     * @param item The item the copy belongs to.
+     * @param copy The copy.
+     */
+    private void repairCopy(Item item, Copy copy) {
+        Lock lock = itemLocks == null ? null : itemLocks.lockFor(item.getOrdinal());
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            if (copy.getDamaged()) {
+                copy.setDamaged(false);
+                copy.setAvailable(true);
+            }
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Decides whether a repair ends with the item archived, from the seed, the item ID, the copy number, the
+     * damage count and the attempt.
+     *
+     * @param pending The repair.
+     * @return True if the item is archived.
+     */
+    private boolean isArchived(PendingRepair pending) {
+        long h = seed ^ ((long) pending.item.getId().hashCode() << 32) ^ ((long) pending.copy.getNumber() << 20)
+                ^ ((long) pending.copy.getDamageCount() << 8) ^ pending.attempt;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (h >>> 11) * 0x1.0p-53 <= ARCHIVE_PROBABILITY;
+    }
+
+    /**
+     * A damaged copy waiting for repair.
+     */
+    private static final class PendingRepair {
+        private final Item item;
+        private final Copy copy;
+        private final int attempt;
+
+        /**
+         * Initializes a new instance of the PendingRepair class.
+         *
+         * @param item    The item the copy belongs to.
+         * @param copy    The damaged copy.
+         * @param attempt How many times the copy has been sent for repair before.
+         */
+        PendingRepair(Item item, Copy copy, int attempt) {
+            this.item = item;
+            this.copy = copy;
+            this.attempt = attempt;
+        }
     }
-}
\ No newline at end of file
+}
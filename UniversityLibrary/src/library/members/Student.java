@@ -1,6 +1,6 @@
 package library.members;
 
-import java.util.UUID;
+import library.util.IdService;
 
 /**
  * Represents a student member in the library system.
@@ -11,7 +11,7 @@ import java.util.UUID;
  * @author mianm
  */
 public class Student extends Member {
-    private final String studentId = UUID.randomUUID().toString();
+    private final long studentId;
 
     /**
      * Initializes a new instance of the Student class.
@@ -21,15 +21,37 @@ public class Student extends Member {
      * @param email The email address of the student.
      */
     public Student(String id, String name, String email) {
+        this(id, name, email, IdService.nextId());
+    }
+
+    /**
+     * Initializes a new instance of the Student class with a known student ID.
+     *
+     * @param id        The unique ID of the student.
+     * @param name      The name of the student.
+     * @param email     The email address of the student.
+     * @param studentId The unique student ID.
+     */
+    public Student(String id, String name, String email, long studentId) {
         super(id, name, email);
+        this.studentId = studentId;
     }
 
     /**
      * Retrieves the unique student ID.
      *
-     * @return The unique student ID.
+     * @return The display form of the unique student ID.
      */
     public String getStudentId() {
+        return IdService.format(studentId);
+    }
+
+    /**
+     * Retrieves the student ID as a number.
+     *
+     * @return The student ID.
+     */
+    public long getStudentIdValue() {
         return studentId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package library.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Produces 64-bit identifiers for copies, books and members.
+ * Identifiers are never 0, so 0 can stand for "no identifier" wherever one is stored.
+ *
+ * <p>Implementations must be safe to call from several threads at once. The two built-in generators do so
+ * without locks: {@link #sequential()} counts up with an atomic add, and {@link #random()} draws from the
+ * calling thread's {@link ThreadLocalRandom}.</p>
+ *
+ * @author mianm
+ */
+public interface IdGenerator {
+
+    /**
+     * Produces the next identifier.
+     *
+     * @return A non-zero identifier.
+     */
+    long nextId();
+
+    /**
+     * Creates a generator that hands out 1, 2, 3 and so on.
+     * Sequential identifiers are unique within one JVM and make runs reproducible.
+     *
+     * @return A new sequential generator.
+     */
+    static IdGenerator sequential() {
+        AtomicLong next = new AtomicLong();
+        return next::incrementAndGet;
+    }
+
+    /**
+     * Creates a generator that draws identifiers from a fast, non-cryptographic random number generator.
+     * Random identifiers are unique with high probability across JVMs that never coordinate.
+     *
+     * @return A new random generator.
+     */
+    static IdGenerator random() {
+        return () -> {
+            long id;
+            do {
+                id = ThreadLocalRandom.current().nextLong();
+            } while (id == 0);
+            return id;
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package library.util;
+
+/**
+ * Holds the {@link IdGenerator} that new copies, books and members take their identifiers from, and converts
+ * identifiers to and from their display form.
+ * The display form is the unsigned hexadecimal value; it is only built when an identifier is shown or written
+ * as text, while comparisons work on the {@code long} itself.
+ *
+ * @author mianm
+ */
+public final class IdService {
+    private static volatile IdGenerator generator = IdGenerator.random();
+
+    private IdService() {
+    }
+
+    /**
+     * Produces the next identifier from the current generator.
+     *
+     * @return A non-zero identifier.
+     */
+    public static long nextId() {
+        return generator.nextId();
+    }
+
+    /**
+     * Replaces the generator used for all new identifiers.
+     *
+     * @param generator The new generator.
+     */
+    public static void setGenerator(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("The identifier generator must not be null");
+        }
+        IdService.generator = generator;
+    }
+
+    /**
+     * Retrieves the generator used for new identifiers.
+     *
+     * @return The current generator.
+     */
+    public static IdGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Builds the display form of an identifier.
+     *
+     * @param id The identifier.
+     * @return The identifier as unsigned hexadecimal.
+     */
+    public static String format(long id) {
+        return Long.toHexString(id);
+    }
+
+    /**
+     * Reads an identifier from its display form.
+     *
+     * @param text The identifier as unsigned hexadecimal.
+     * @return The identifier.
+     * @throws NumberFormatException If the text is not a hexadecimal identifier.
+     */
+    public static long parse(String text) {
+        return Long.parseUnsignedLong(text, 16);
+    }
+}
@@ -0,0 +1,105 @@
+package library.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ * Used wherever the library keeps large lists of ordinals and would otherwise box every value.
+ * 
+ * @author mianm
+ */
+public class IntList {
+    private int[] values;
+    private int size;
+
+    /**
+     * Initializes a new, empty instance of the IntList class.
+     */
+    public IntList() {
+        this(4);
+    }
+
+    /**
+     * Initializes a new, empty instance of the IntList class with the given capacity.
+     *
+     * @param capacity The initial capacity.
+     */
+    public IntList(int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value The value to append.
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Retrieves the value at the given position.
+     *
+     * @param index The position of the value.
+     * @return The value at the given position.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Replaces the value at the given position.
+     *
+     * @param index The position of the value.
+     * @param value The new value.
+     */
+    public void set(int index, int value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Retrieves the last value in the list.
+     *
+     * @return The last value, or -1 if the list is empty.
+     */
+    public int last() {
+        return size == 0 ? -1 : values[size - 1];
+    }
+
+    /**
+     * Retrieves the number of values in the list.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list is empty.
+     *
+     * @return True if the list holds no values, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the values into a new array.
+     *
+     * @return An array holding the values in list order.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,188 @@
+package library.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram.
+ * Values below 128 get a bucket each; above that every power of two is split into 64 linear buckets, so a
+ * recorded value is off by less than 1.6% no matter its magnitude. Values up to about 18 minutes are tracked
+ * exactly to that precision; longer ones are counted in the last bucket.
+ *
+ * <p>Recording only increments counters that exist from the start, so it never allocates and may be called
+ * from several threads at once. Percentiles are read from a {@link Snapshot}.</p>
+ *
+ * @author mianm
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HIGHEST_BIT = 40;
+    private static final long HIGHEST_TRACKABLE = (1L << (HIGHEST_BIT + 1)) - 1;
+    private static final int BUCKET_COUNT = indexOf(HIGHEST_TRACKABLE) + 1;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    /**
+     * Initializes a new, empty instance of the LatencyHistogram class.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.total = new LongAdder();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(0);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(Math.min(value, HIGHEST_TRACKABLE)));
+        total.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+        current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+    }
+
+    /**
+     * Copies the current state of the histogram.
+     * Values recorded while the copy is taken may or may not be included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, total.sum(), count == 0 ? 0 : min.get(), max.get());
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value The value, between 0 and the highest trackable value.
+     * @return The index of the bucket.
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Finds the highest value that falls into a bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The highest value of the bucket.
+     */
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long min;
+        private final long max;
+
+        /**
+         * Initializes a new instance of the Snapshot class.
+         *
+         * @param counts The count of every bucket.
+         * @param count  The number of recorded values.
+         * @param total  The sum of the recorded values.
+         * @param min    The smallest recorded value.
+         * @param max    The largest recorded value.
+         */
+        Snapshot(long[] counts, long count, long total, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Retrieves the number of recorded values.
+         *
+         * @return The number of values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Retrieves the smallest recorded value.
+         *
+         * @return The smallest value in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * Retrieves the largest recorded value.
+         *
+         * @return The largest value in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Retrieves the mean of the recorded values.
+         *
+         * @return The mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Retrieves the value that the given percentage of recorded values are at or below.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The value in nanoseconds, to the precision of the histogram, or 0 if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, highestValueOf(i)));
+                }
+            }
+            return max;
+        }
+    }
+}
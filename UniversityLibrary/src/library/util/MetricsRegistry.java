@@ -0,0 +1,329 @@
+package library.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of named operation timers and counters.
+ * Each operation keeps a {@link LatencyHistogram} and counts its successes and failures.
+ *
+ * <p>Operations and counters are looked up by name once and kept by the code that records into them, so
+ * recording is a clock read and a few counter increments without allocation or map lookups. The registry can
+ * be read as a {@link Snapshot}, written out as text on demand, or written out periodically.</p>
+ *
+ * @author mianm
+ */
+public class MetricsRegistry {
+    private final Map<String, Operation> operations;
+    private final Map<String, LongAdder> counters;
+    private final long startNanos;
+    private ScheduledExecutorService exporter;
+
+    /**
+     * Initializes a new, empty instance of the MetricsRegistry class.
+     */
+    public MetricsRegistry() {
+        this.operations = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Retrieves the timer of an operation, creating it on first use.
+     *
+     * @param name The name of the operation.
+     * @return The timer.
+     */
+    public Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> new Operation());
+    }
+
+    /**
+     * Retrieves a counter, creating it on first use.
+     *
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Copies the current state of every operation and counter.
+     *
+     * @return The snapshot, with operations and counters sorted by name.
+     */
+    public Snapshot snapshot() {
+        Map<String, OperationSnapshot> operationSnapshots = new LinkedHashMap<>();
+        operations.keySet().stream().sorted().forEach(name -> {
+            Operation op = operations.get(name);
+            operationSnapshots.put(name, new OperationSnapshot(op.successes.sum(), op.failures.sum(),
+                    op.latency.snapshot()));
+        });
+        Map<String, Long> counterValues = new LinkedHashMap<>();
+        counters.keySet().stream().sorted().forEach(name -> counterValues.put(name, counters.get(name).sum()));
+        return new Snapshot(System.nanoTime() - startNanos, operationSnapshots, counterValues);
+    }
+
+    /**
+     * Writes the current state of the registry as text.
+     *
+     * @param out Where to write the text.
+     */
+    public void export(Appendable out) {
+        snapshot().writeText(out);
+    }
+
+    /**
+     * Writes the state of the registry as text at a fixed interval from a background thread.
+     * Any periodic export that is already running is stopped first.
+     *
+     * @param out          Where to write the text.
+     * @param periodMillis The interval between two exports.
+     */
+    public synchronized void startPeriodicExport(PrintStream out, long periodMillis) {
+        stopPeriodicExport();
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleAtFixedRate(() -> {
+            export(out);
+            out.flush();
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic export, if one is running.
+     */
+    public synchronized void stopPeriodicExport() {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            exporter = null;
+        }
+    }
+
+    /**
+     * The timer of one operation.
+     */
+    public static final class Operation {
+        private final LatencyHistogram latency;
+        private final LongAdder successes;
+        private final LongAdder failures;
+
+        /**
+         * Initializes a new instance of the Operation class.
+         */
+        Operation() {
+            this.latency = new LatencyHistogram();
+            this.successes = new LongAdder();
+            this.failures = new LongAdder();
+        }
+
+        /**
+         * Records one call of the operation that started at the given time and ends now.
+         *
+         * @param startNanos The value of {@link System#nanoTime()} when the call started.
+         * @param success    True if the call succeeded.
+         */
+        public void record(long startNanos, boolean success) {
+            latency.record(System.nanoTime() - startNanos);
+            if (success) {
+                successes.increment();
+            } else {
+                failures.increment();
+            }
+        }
+    }
+
+    /**
+     * The state of one operation at the time of a snapshot.
+     */
+    public static final class OperationSnapshot {
+        private final long successes;
+        private final long failures;
+        private final LatencyHistogram.Snapshot latency;
+
+        /**
+         * Initializes a new instance of the OperationSnapshot class.
+         *
+         * @param successes The number of successful calls.
+         * @param failures  The number of failed calls.
+         * @param latency   The latencies of all calls.
+         */
+        OperationSnapshot(long successes, long failures, LatencyHistogram.Snapshot latency) {
+            this.successes = successes;
+            this.failures = failures;
+            this.latency = latency;
+        }
+
+        /**
+         * Retrieves the number of successful calls.
+         *
+         * @return The number of successes.
+         */
+        public long getSuccesses() {
+            return successes;
+        }
+
+        /**
+         * Retrieves the number of failed calls.
+         *
+         * @return The number of failures.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Retrieves the total number of calls.
+         *
+         * @return The number of calls.
+         */
+        public long getCount() {
+            return successes + failures;
+        }
+
+        /**
+         * Retrieves the share of calls that failed.
+         *
+         * @return The failure rate between 0 and 1, or 0 if there were no calls.
+         */
+        public double getFailureRate() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) failures / count;
+        }
+
+        /**
+         * Retrieves the latencies of all calls.
+         *
+         * @return The latency histogram.
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * The state of a registry at one point in time.
+     */
+    public static final class Snapshot {
+        private final long uptimeNanos;
+        private final Map<String, OperationSnapshot> operations;
+        private final Map<String, Long> counters;
+
+        /**
+         * Initializes a new instance of the Snapshot class.
+         *
+         * @param uptimeNanos How long the registry had existed when the snapshot was taken.
+         * @param operations  The operations by name.
+         * @param counters    The counter values by name.
+         */
+        Snapshot(long uptimeNanos, Map<String, OperationSnapshot> operations, Map<String, Long> counters) {
+            this.uptimeNanos = uptimeNanos;
+            this.operations = Collections.unmodifiableMap(operations);
+            this.counters = Collections.unmodifiableMap(counters);
+        }
+
+        /**
+         * Retrieves how long the registry had existed when the snapshot was taken.
+         *
+         * @return The time in nanoseconds.
+         */
+        public long getUptimeNanos() {
+            return uptimeNanos;
+        }
+
+        /**
+         * Retrieves the state of every operation.
+         *
+         * @return The operations by name, sorted by name.
+         */
+        public Map<String, OperationSnapshot> getOperations() {
+            return operations;
+        }
+
+        /**
+         * Retrieves the state of one operation.
+         *
+         * @param name The name of the operation.
+         * @return The state of the operation, or null if it was never used.
+         */
+        public OperationSnapshot getOperation(String name) {
+            return operations.get(name);
+        }
+
+        /**
+         * Retrieves the value of every counter.
+         *
+         * @return The counter values by name, sorted by name.
+         */
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        /**
+         * Retrieves the average number of calls per second of an operation since the registry was created.
+         *
+         * @param name The name of the operation.
+         * @return The throughput, or 0 if the operation was never used.
+         */
+        public double getThroughput(String name) {
+            OperationSnapshot op = operations.get(name);
+            return op == null || uptimeNanos <= 0 ? 0 : op.getCount() * 1e9 / uptimeNanos;
+        }
+
+        /**
+         * Writes the snapshot as text: one line per operation with its call counts, failure rate,
+         * throughput and latency percentiles in microseconds, then one line per counter.
+         *
+         * @param out Where to write the text.
+         */
+        public void writeText(Appendable out) {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("# metrics after %.1f s%n", uptimeNanos / 1e9));
+            text.append(String.format("%-28s %10s %10s %7s %10s %9s %9s %9s %9s %9s %9s%n", "operation", "calls",
+                    "failures", "fail%", "ops/s", "mean_us", "p50_us", "p90_us", "p99_us", "p999_us", "max_us"));
+            for (Map.Entry<String, OperationSnapshot> entry : operations.entrySet()) {
+                OperationSnapshot op = entry.getValue();
+                LatencyHistogram.Snapshot latency = op.getLatency();
+                text.append(String.format("%-28s %10d %10d %7.2f %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                        entry.getKey(), op.getCount(), op.getFailures(), op.getFailureRate() * 100,
+                        getThroughput(entry.getKey()), latency.getMean() / 1e3,
+                        latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(90) / 1e3,
+                        latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3,
+                        latency.getMax() / 1e3));
+            }
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                text.append(String.format("%-28s %10d%n", entry.getKey(), entry.getValue()));
+            }
+            try {
+                out.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the metrics", e);
+            }
+        }
+
+        /**
+         * Formats the snapshot as text.
+         *
+         * @return The text written by {@link #writeText(Appendable)}.
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            writeText(text);
+            return text.toString();
+        }
+    }
+}
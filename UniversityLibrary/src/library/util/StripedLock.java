@@ -0,0 +1,71 @@
+package library.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that keys are spread across by hash.
+ * Keys that land on different stripes never contend, while the number of lock objects stays bounded
+ * no matter how many keys there are.
+ * 
+ * @author mianm
+ */
+public class StripedLock {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Initializes a new instance of the StripedLock class.
+     *
+     * @param minStripes The minimum number of stripes; rounded up to a power of two.
+     */
+    public StripedLock(int minStripes) {
+        int count = 1;
+        while (count < minStripes) {
+            count <<= 1;
+        }
+        this.stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = count - 1;
+    }
+
+    /**
+     * Creates a lock set sized for the processors available to this JVM.
+     *
+     * @return A new lock set with several stripes per processor.
+     */
+    public static StripedLock forProcessors() {
+        return new StripedLock(Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    /**
+     * Retrieves the lock guarding the given hash.
+     *
+     * @param hash The hash of the key.
+     * @return The lock of the stripe the key belongs to.
+     */
+    public ReentrantLock lockFor(int hash) {
+        int h = hash * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    /**
+     * Retrieves the lock guarding the given key.
+     *
+     * @param key The key.
+     * @return The lock of the stripe the key belongs to.
+     */
+    public ReentrantLock lockFor(Object key) {
+        return lockFor(key.hashCode());
+    }
+
+    /**
+     * Retrieves the number of stripes.
+     *
+     * @return The number of stripes.
+     */
+    public int size() {
+        return stripes.length;
+    }
+}
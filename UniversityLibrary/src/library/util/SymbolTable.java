@@ -0,0 +1,98 @@
+package library.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes repeated strings, such as authors and topics, as small integer codes.
+ * Every distinct value is stored once and gets the next free code; equal values always get the same code and
+ * decode to the same String instance, so values can be grouped and compared by code. Each library keeps its own
+ * tables, so codes are only comparable within one catalog and a table lives no longer than its library.
+ *
+ * <p>Looking up a value that already has a code and decoding a code never lock. Only the first occurrence of a
+ * value takes the table's lock to assign its code.</p>
+ *
+ * @author mianm
+ */
+public class SymbolTable {
+    private final Map<String, Integer> codes;
+    private volatile String[] values;
+    private volatile int size;
+
+    /**
+     * Initializes a new, empty instance of the SymbolTable class.
+     */
+    public SymbolTable() {
+        this.codes = new ConcurrentHashMap<>();
+        this.values = new String[64];
+    }
+
+    /**
+     * Retrieves the code of a value, assigning the next free code if the value is new.
+     *
+     * @param value The value.
+     * @return The code, or -1 for null.
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = size;
+            String[] current = values;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, next * 2);
+            }
+            current[next] = value;
+            values = current;
+            size = next + 1;
+            codes.put(value, next);
+            return next;
+        }
+    }
+
+    /**
+     * Retrieves the code of a value without assigning one.
+     *
+     * @param value The value.
+     * @return The code, or -1 if the value has no code.
+     */
+    public int find(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Retrieves the value of a code.
+     *
+     * @param code The code.
+     * @return The shared instance of the value, or null for -1.
+     */
+    public String value(int code) {
+        if (code == -1) {
+            return null;
+        }
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Code: " + code + ", Size: " + size);
+        }
+        return values[code];
+    }
+
+    /**
+     * Retrieves the number of distinct values.
+     *
+     * @return The number of codes assigned.
+     */
+    public int size() {
+        return size;
+    }
+}
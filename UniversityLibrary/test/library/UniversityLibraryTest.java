@@ -1,13 +1,35 @@
 package library;
 
 import library.items.Book;
+import library.items.Copy;
+import library.items.Thesis;
 import library.items.Item;
 import library.members.Faculty;
 import library.members.Student;
 import library.members.Member;
+import library.members.RepairSection;
+import library.util.IdGenerator;
+import library.util.IdService;
+import library.util.IntList;
+import library.util.LatencyHistogram;
+import library.util.MetricsRegistry;
+import library.util.SymbolTable;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 
 /**
@@ -23,6 +45,9 @@ public class UniversityLibraryTest {
     private Member student;
     private Member faculty;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Sets up the test environment by initializing the library, items, and members,
      * and adding them to the system.
@@ -49,6 +74,18 @@ public class UniversityLibraryTest {
         assertEquals(2, library.getMembers().size());
     }
 
+    /**
+     * Test case to verify that items and members with an already registered ID are rejected.
+     */
+    @Test
+    public void testDuplicateIdsRejected() {
+        assertFalse(library.addItem(new Book("1", "Refactoring", "Martin Fowler", 448, "Software Engineering", 1)));
+        assertFalse(library.registerMember(new Student("100", "Carol", "carol@uni.edu")));
+        assertEquals(2, library.getItems().size());
+        assertEquals(2, library.getMembers().size());
+        assertEquals("Clean Code", library.searchByTitle("Clean").get(0).getTitle());
+    }
+
     /**
      * Test case to verify that an item can be successfully borrowed by a valid member.
      */
@@ -104,6 +141,19 @@ public class UniversityLibraryTest {
         assertEquals("Design Patterns", result.get(0).getTitle());
     }
 
+    /**
+     * Test case to verify that indexed searches ignore case and match substrings of any length.
+     */
+    @Test
+    public void testSearchMatchesSubstrings() {
+        assertEquals(2, library.searchByTitle("e").size());
+        assertEquals(1, library.searchByTitle("AN C").size());
+        assertEquals(1, library.searchByAuthor("ert mar").size());
+        assertEquals(0, library.searchByAuthor("martin robert").size());
+        assertEquals(2, library.searchByTopic("software").size());
+        assertEquals(2, library.searchByTitle("").size());
+    }
+
     /**
      * Test case to verify that the most popular item is returned based on the number of borrow transactions.
      */
@@ -117,4 +167,918 @@ public class UniversityLibraryTest {
         library.returnItem("100", "2", false);
         assertEquals("Clean Code", library.getMostPopularItem().getTitle());
     }
+
+    /**
+     * Test case to verify that the popularity ranking follows borrows and breaks ties by catalog order.
+     */
+    @Test
+    public void testMostPopularItemsRanking() {
+        Item book3 = new Book("3", "Refactoring", "Martin Fowler", 448, "Software Engineering", 2);
+        library.addItem(book3);
+        assertEquals("Clean Code", library.getMostPopularItem().getTitle());
+
+        library.borrowItem("100", "3");
+        library.borrowItem("200", "3");
+        library.borrowItem("100", "2");
+        List<Item> top = library.getMostPopularItems(2);
+        assertEquals(2, top.size());
+        assertEquals(book3, top.get(0));
+        assertEquals(book2, top.get(1));
+        assertEquals(3, library.getMostPopularItems().size());
+        assertEquals(book1, library.getMostPopularItems().get(2));
+    }
+
+    /**
+     * Test case to verify that the available copy count always matches the state of the copies.
+     */
+    @Test
+    public void testCopyAvailabilityBookkeeping() {
+        assertTrue(book1.borrowResource());
+        assertTrue(book1.borrowResource());
+        assertEquals(1, book1.getCopiesCount());
+
+        Copy damaged = null;
+        for (Copy c : book1.getCopies()) {
+            if (!c.getAvailable()) {
+                damaged = c;
+            }
+        }
+        damaged.setDamaged(true);
+        book1.returnResource(damaged);
+        assertEquals(1, book1.AvailableCopyCount());
+
+        damaged.setDamaged(false);
+        damaged.setAvailable(true);
+        assertEquals(2, book1.getCopiesCount());
+        int available = 0;
+        for (Copy c : book1.getCopies()) {
+            if (c.getAvailable()) {
+                available++;
+            }
+        }
+        assertEquals(available, book1.getCopiesCount());
+        assertEquals(3, book1.getCopies().size());
+    }
+
+    /**
+     * Test case to verify that concurrent borrows never hand out more copies than exist
+     * and never let a member exceed the borrow limit.
+     */
+    @Test
+    public void testConcurrentBorrowing() throws InterruptedException {
+        UniversityLibrary shared = new UniversityLibrary(true);
+        Item reserve = new Book("R1", "Algorithms", "Robert Sedgewick", 955, "Computer Science", 50);
+        Item shelf = new Book("R2", "Compilers", "Alfred Aho", 1009, "Computer Science", 100);
+        shared.addItem(reserve);
+        shared.addItem(shelf);
+        for (int i = 0; i < 200; i++) {
+            shared.registerMember(new Student("S" + i, "Student " + i, "s" + i + "@uni.edu"));
+        }
+        Member limited = new Student("L", "Limited", "l@uni.edu");
+        shared.registerMember(limited);
+
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger limitedSuccesses = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            String memberId = "S" + i;
+            pool.execute(() -> {
+                if (shared.borrowItem(memberId, "R1")) {
+                    successes.incrementAndGet();
+                }
+            });
+            if (i % 10 == 0) {
+                pool.execute(() -> {
+                    if (shared.borrowItem("L", "R2")) {
+                        limitedSuccesses.incrementAndGet();
+                    }
+                });
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, successes.get());
+        assertEquals(0, reserve.getCopiesCount());
+        assertEquals(0, reserve.AvailableCopyCount());
+        assertEquals(3, limitedSuccesses.get());
+        assertEquals(3, limited.getCurrBorrowedItems().size());
+        assertEquals(97, shelf.getCopiesCount());
+        assertEquals(3, shelf.getBorrowCount());
+        int borrows = 0;
+        for (Transaction t : shared.getActiveTransactions()) {
+            if ("Borrow".equals(t.getTrascationType())) {
+                borrows++;
+            }
+        }
+        assertEquals(53, borrows);
+        assertEquals(53, shared.getActiveTransactions().size());
+    }
+
+    /**
+     * Test case to verify that digital counters count every concurrent view and keep the rankings current.
+     */
+    @Test
+    public void testDigitalCountersAndRankings() throws InterruptedException {
+        UniversityLibrary shared = new UniversityLibrary(true);
+        Item first = new Book("D1", "Operating Systems", "Andrew Tanenbaum", 1136, "Computer Science", 1);
+        Item second = new Book("D2", "Computer Networks", "Andrew Tanenbaum", 960, "Computer Science", 1);
+        first.createDigVersion();
+        shared.addItem(first);
+        shared.addItem(second);
+        second.createDigVersion();
+        assertSame(first, shared.getMostViewedDigitalItem());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            pool.execute(() -> second.getDigitalVersion().viewDigital());
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, second.getDigitalVersion().getViews());
+        assertSame(second, shared.getMostViewedDigitalItem());
+        first.getDigitalVersion().downloadsDigital();
+        assertSame(first, shared.getMostDownloadedDigitalItem());
+
+        second.getDigitalVersion().setViews(0);
+        first.getDigitalVersion().viewDigital();
+        assertSame(first, shared.getMostViewedDigitalItem());
+
+        ExecutorService racing = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            Item viewed = i % 2 == 0 ? first : second;
+            racing.execute(() -> viewed.getDigitalVersion().viewDigital());
+            if (i % 4 == 1) {
+                racing.execute(() -> second.getDigitalVersion().viewDigital());
+            }
+        }
+        racing.shutdown();
+        assertTrue(racing.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(4001, first.getDigitalVersion().getViews());
+        assertEquals(6000, second.getDigitalVersion().getViews());
+        assertSame(second, shared.getMostViewedDigitalItem());
+    }
+
+    /**
+     * Test case to verify that transaction IDs are unique, ordered and carry the node ID.
+     */
+    @Test
+    public void testTransactionIdGenerator() throws InterruptedException {
+        long[] clock = {TransactionIdGenerator.EPOCH + 1000};
+        TransactionIdGenerator generator = new TransactionIdGenerator(7, () -> clock[0]);
+        long first = generator.nextId();
+        assertEquals(7, TransactionIdGenerator.nodeOf(first));
+        assertEquals(clock[0], TransactionIdGenerator.timestampOf(first));
+        clock[0] -= 500;
+        long later = generator.nextId();
+        assertTrue(later > first);
+
+        TransactionIdGenerator restarted = new TransactionIdGenerator(7, () -> clock[0]);
+        restarted.advancePast(later);
+        assertTrue(restarted.nextId() > later);
+
+        TransactionIdGenerator shared = new TransactionIdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int n = 0; n < 10000; n++) {
+                    ids.add(shared.nextId());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(80000, ids.size());
+    }
+
+    /**
+     * Test case to verify the time, member and item queries of the transaction history.
+     */
+    @Test
+    public void testTransactionHistoryQueries() {
+        library.borrowItem("100", "1");
+        library.borrowItem("200", "2");
+        library.returnItem("100", "1", false);
+
+        assertEquals(2, library.getTransactionsOfMember("100").size());
+        assertEquals("Return", library.getTransactionsOfMember("100").get(1).getTrascationType());
+        assertSame(book2, library.getTransactionsOfItem("2").get(0).getItem());
+        assertTrue(library.getTransactionsOfMember("999").isEmpty());
+        assertEquals(3, library.getTransactionsBetween(0, Long.MAX_VALUE).size());
+
+        TransactionHistory history = new TransactionHistory(ordinal -> null, ordinal -> null);
+        history.append(1, TransactionHistory.BORROW, 3000, 0, 0);
+        history.append(2, TransactionHistory.BORROW, 1000, 1, 0);
+        history.append(3, TransactionHistory.RETURN, 2000, 0, 0);
+        history.append(4, TransactionHistory.RETURN, 5000, 1, 0);
+
+        IntList rows = history.rowsBetween(1000, 3000);
+        assertEquals(2, rows.size());
+        assertEquals(2, history.getId(rows.get(0)));
+        assertEquals(3, history.getId(rows.get(1)));
+        assertEquals(2, history.rowsOfMember(1).size());
+        assertEquals(4, history.rowsOfItem(0).size());
+        assertEquals(0, history.rowsBetween(6000, 7000).size());
+    }
+
+    /**
+     * Test case to verify that a return takes back the copy that was handed out and marks it damaged.
+     */
+    @Test
+    public void testLoanReturnsExactCopy() {
+        library.borrowItem("200", "1");
+        library.borrowItem("200", "1");
+        Member bob = library.getMembers().get(1);
+        assertEquals(2, bob.getLoans().size());
+        Copy first = bob.getLoans().get(0).getCopy();
+        Copy second = bob.getLoans().get(1).getCopy();
+        assertNotSame(first, second);
+
+        library.returnItem("200", "1", true);
+        assertEquals(1, bob.getLoans().size());
+        assertSame(first, bob.getLoans().get(0).getCopy());
+        assertEquals(1, second.getDamageCount());
+        assertEquals(second.getDamaged(), !second.getAvailable());
+
+        library.returnItem("200", "1", false);
+        assertTrue(bob.getLoans().isEmpty());
+        assertTrue(first.getAvailable());
+        assertEquals(0, first.getDamageCount());
+    }
+
+    /**
+     * Test case to verify that the borrowing history keeps the most recent returns and pages through them.
+     */
+    @Test
+    public void testBorrowHistoryRetention() {
+        for (int i = 0; i < 3; i++) {
+            library.borrowItem("200", "1");
+            library.returnItem("200", "1", false);
+            library.borrowItem("200", "2");
+            library.returnItem("200", "2", false);
+        }
+        Member bob = library.getMembers().get(1);
+        assertEquals(6, bob.getAllBorrowedItems().size());
+        assertEquals(book2, bob.getAllBorrowedItems().get(5));
+        assertEquals(2, bob.getBorrowedItemsPage(4, 10).size());
+
+        library.setHistoryRetention(3);
+        assertEquals(3, bob.getAllBorrowedItems().size());
+        assertEquals(book2, bob.getAllBorrowedItems().get(0));
+        library.borrowItem("200", "1");
+        library.returnItem("200", "1", false);
+        assertEquals(3, bob.getBorrowHistory().size());
+        assertEquals(7, bob.getBorrowHistory().getRecordedCount());
+        assertEquals(book1, bob.getAllBorrowedItems().get(2));
+        assertEquals(1, bob.getBorrowedItemsPage(2, 5).size());
+    }
+
+    /**
+     * Test case to verify that seeded repair outcomes are reproducible although copy IDs differ between runs,
+     * and that background repairs do not hold up returns.
+     */
+    @Test
+    public void testRepairPipeline() throws Exception {
+        String[] outcomes = new String[2];
+        for (int run = 0; run < 2; run++) {
+            Item item = new Book("R", "Repair Me", "Some Author", 10, "Topic", 0);
+            for (int i = 0; i < 40; i++) {
+                Copy copy = new Copy();
+                copy.setAvailable(false);
+                copy.setDamaged(true);
+                copy.setDamageCount(1);
+                item.addCopy(copy);
+            }
+            RepairSection section = new RepairSection();
+            section.setSeed(42);
+            section.requestRepair(item);
+            StringBuilder outcome = new StringBuilder();
+            for (Copy c : item.getCopies()) {
+                outcome.append(c.getDamaged() ? 'A' : 'R');
+            }
+            outcomes[run] = outcome.toString();
+            assertEquals(40, section.getRepairCount());
+        }
+        assertEquals(outcomes[0], outcomes[1]);
+        assertTrue(outcomes[0].contains("A") && outcomes[0].contains("R"));
+
+        RepairSection section = library.getRepairSection();
+        section.start(2, Executors.defaultThreadFactory(), 60_000);
+        assertTrue(section.isRunning());
+        library.borrowItem("100", "1");
+        library.returnItem("100", "1", true);
+        assertEquals(1, section.getPendingCount());
+        assertEquals(0, section.getRepairCount());
+        section.shutdown(5, TimeUnit.SECONDS);
+        assertFalse(section.isRunning());
+        assertEquals(0, section.getPendingCount());
+        assertEquals(1, section.getRepairCount());
+    }
+
+    /**
+     * Test case to verify that library operations are timed and counted and that histograms keep their precision.
+     */
+    @Test
+    public void testOperationMetrics() {
+        library.borrowItem("100", "1");
+        library.borrowItem("100", "missing");
+        library.returnItem("100", "1", false);
+        library.searchByTitle("code");
+
+        MetricsRegistry.Snapshot snapshot = library.getMetrics().snapshot();
+        MetricsRegistry.OperationSnapshot borrows = snapshot.getOperation("borrowItem");
+        assertEquals(2, borrows.getCount());
+        assertEquals(1, borrows.getFailures());
+        assertEquals(0.5, borrows.getFailureRate(), 1e-9);
+        assertEquals(2, borrows.getLatency().getCount());
+        assertEquals(1, snapshot.getOperation("returnItem").getSuccesses());
+        assertEquals(1, snapshot.getOperation("searchByTitle").getCount());
+        assertTrue(snapshot.toString().contains("borrowItem"));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot latency = histogram.snapshot();
+        assertEquals(100_000, latency.getCount());
+        assertEquals(1000, latency.getMin());
+        assertEquals(100_000_000, latency.getMax());
+        assertEquals(50_000_000, latency.getValueAtPercentile(50), 50_000_000 * 0.016);
+        assertEquals(99_000_000, latency.getValueAtPercentile(99), 99_000_000 * 0.016);
+        assertEquals(100_000_000, latency.getValueAtPercentile(100));
+    }
+
+    /**
+     * Test case to verify that the off-heap catalog searches, circulates and ranks items without materializing them.
+     */
+    @Test
+    public void testOffHeapCatalog() {
+        OffHeapCatalog catalog = new OffHeapCatalog();
+        String firstCopyId = book2.getCopies().get(0).getCopyId();
+        assertEquals(0, catalog.append(book1));
+        assertEquals(1, catalog.append(book2));
+        assertEquals(-1, catalog.append(new Book("1", "Duplicate", "Nobody", 1, "None", 1)));
+        for (int i = 0; i < 70_000; i++) {
+            catalog.append(new Thesis("PhD", "ELTE", "T" + i, "Thesis " + i, "Author " + (i % 10), 80, "Topic", 1));
+        }
+        assertEquals(70_002, catalog.size());
+        assertEquals(69_999 + 2, catalog.find("T69999"));
+        assertEquals(-1, catalog.find("missing"));
+
+        assertEquals(1, catalog.search(OffHeapCatalog.TITLE, "CLEAN").size());
+        assertEquals(2, catalog.search(OffHeapCatalog.TOPIC, "software").size());
+        assertEquals(7_000, catalog.search(OffHeapCatalog.AUTHOR, "author 3").size());
+        assertEquals(11, catalog.search(OffHeapCatalog.TITLE, "THESIS 6999").size());
+        assertEquals(1, catalog.search(OffHeapCatalog.TITLE, "gn").size());
+        assertTrue(catalog.search(OffHeapCatalog.TITLE, "no such title").isEmpty());
+
+        int first = catalog.checkout(1);
+        int second = catalog.checkout(1);
+        assertTrue(first >= 0 && second >= 0 && first != second);
+        assertEquals(-1, catalog.checkout(1));
+        assertTrue(catalog.checkin(first, true));
+        assertTrue(catalog.checkin(second, false));
+        assertFalse(catalog.checkin(second, true));
+        OffHeapCatalog.Cursor cursor = catalog.cursor().moveTo(1);
+        assertEquals("Design Patterns", cursor.getTitle());
+        assertEquals(2, cursor.getBorrowCount());
+        assertEquals(1, cursor.getAvailableCopyCount());
+        assertFalse(catalog.checkin(first, false));
+        assertTrue(catalog.repair(first));
+        assertFalse(catalog.repair(first));
+        assertEquals(2, cursor.getAvailableCopyCount());
+
+        catalog.checkout(catalog.find("T5"));
+        IntList popular = catalog.mostPopular(3);
+        assertEquals(1, popular.get(0));
+        assertEquals(catalog.find("T5"), popular.get(1));
+        assertEquals(0, popular.get(2));
+        IntList longer = catalog.mostPopular(2_000);
+        assertEquals(2_000, longer.size());
+        assertEquals(catalog.find("T5"), longer.get(1));
+        assertEquals(1_999, longer.get(1_999));
+
+        int worn = catalog.find("T7");
+        int wornCopy = -1;
+        for (int i = 0; i < 5; i++) {
+            wornCopy = catalog.checkout(worn);
+            assertTrue(catalog.checkin(wornCopy, true));
+            assertTrue(catalog.repair(wornCopy));
+        }
+        assertEquals(wornCopy, catalog.checkout(worn));
+        assertTrue(catalog.checkin(wornCopy, true));
+        assertFalse(catalog.repair(wornCopy));
+        assertEquals(0, catalog.cursor().moveTo(worn).getCopiesCount());
+        assertEquals(-1, catalog.checkout(worn));
+        assertEquals(worn, catalog.mostPopular(1).get(0));
+        assertEquals(0, catalog.materialize(worn).getCreatedCopies().size());
+        assertEquals(0, catalog.materialize(worn).getUncreatedCopyCount());
+
+        Item restored = catalog.materialize(catalog.find("T42"));
+        assertTrue(restored instanceof Thesis);
+        assertEquals("ELTE", ((Thesis) restored).getUniversity());
+        assertEquals(3, catalog.materialize(0).getUncreatedCopyCount());
+        assertEquals(firstCopyId, catalog.materialize(1).getCopies().get(0).getCopyId());
+        assertEquals(1, catalog.materialize(1).getCopies().get(0).getDamageCount());
+    }
+
+    /**
+     * Test case to verify that copies are only created when they are handed out or the copy list is read.
+     */
+    @Test
+    public void testLazyCopies() throws Exception {
+        Item shelf = new Book("50", "Fifty Copies", "Some Author", 100, "Topic", 50);
+        library.addItem(shelf);
+        assertEquals(0, shelf.getCreatedCopies().size());
+        assertEquals(50, shelf.getCopiesCount());
+
+        assertTrue(library.borrowItem("100", "50"));
+        assertEquals(1, shelf.getCreatedCopies().size());
+        assertEquals(49, shelf.getUncreatedCopyCount());
+        assertEquals(49, shelf.AvailableCopyCount());
+        library.getRepairSection().start(1, Executors.defaultThreadFactory(), TimeUnit.HOURS.toMillis(1));
+        library.returnItem("100", "50", true);
+        assertEquals(1, shelf.getCreatedCopies().size());
+        assertEquals(49, shelf.getCopiesCount());
+
+        File file = new File(folder.getRoot(), "lazy.snapshot");
+        LibrarySnapshot.write(library, file.toPath());
+        assertEquals(1, shelf.getCreatedCopies().size());
+        UniversityLibrary reloaded = LibrarySnapshot.load(file.toPath());
+        Item restored = reloaded.getItems().get(2);
+        assertEquals(1, restored.getCreatedCopies().size());
+        assertEquals(49, restored.getUncreatedCopyCount());
+        assertEquals(49, restored.getCopiesCount());
+        assertTrue(restored.getCreatedCopies().get(0).getDamaged());
+        assertEquals(1, reloaded.getRepairSection().getPendingCount());
+        assertEquals(1, reloaded.getRepairSection().drain());
+        assertEquals(1, reloaded.getRepairSection().getRepairCount());
+
+        library.getRepairSection().shutdown(1, TimeUnit.SECONDS);
+
+        assertEquals(50, shelf.getCopies().size());
+        assertEquals(0, shelf.getUncreatedCopyCount());
+        int available = 0;
+        for (Copy c : shelf.getCopies()) {
+            if (c.getAvailable()) {
+                available++;
+            }
+        }
+        assertEquals(shelf.getCopiesCount(), available);
+    }
+
+    /**
+     * Test case to verify that identifiers come from the configured generator and round-trip through their text form.
+     */
+    @Test
+    public void testIdGenerators() throws Exception {
+        IdGenerator previous = IdService.getGenerator();
+        try {
+            IdService.setGenerator(IdGenerator.sequential());
+            Copy first = new Copy();
+            Copy second = new Copy();
+            assertEquals(first.getCopyIdValue() + 1, second.getCopyIdValue());
+            Student carol = new Student("300", "Carol", "carol@uni.edu");
+            assertEquals(second.getCopyIdValue() + 1, carol.getStudentIdValue());
+        } finally {
+            IdService.setGenerator(previous);
+        }
+
+        IdGenerator random = IdGenerator.random();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ids.add(random.nextId());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40_000, ids.size());
+        assertFalse(ids.contains(0L));
+
+        long id = ids.iterator().next();
+        assertEquals(id, IdService.parse(IdService.format(id)));
+        Copy copy = book1.getCopies().get(0);
+        assertEquals(IdService.format(copy.getCopyIdValue()), copy.getCopyId());
+        assertEquals(copy.getCopyId(), copy.toString());
+    }
+
+    /**
+     * Test case to verify that authors and topics are shared within a library and can be grouped by code.
+     */
+    @Test
+    public void testSymbolTables() {
+        Item other = new Book("3", "Refactoring", "Martin " + "Fowler", 448, "Software " + "Engineering", 1);
+        library.addItem(other);
+        assertSame(book1.getTopic(), other.getTopic());
+        assertEquals(book1.getTopicCode(), other.getTopicCode());
+        assertNotEquals(book1.getAuthorCode(), other.getAuthorCode());
+
+        assertEquals(3, library.getItemsOnTopic("Software Engineering").size());
+        assertEquals(other, library.getItemsByAuthor("Martin Fowler").get(0));
+        assertTrue(library.getItemsOnTopic("Unknown Topic").isEmpty());
+        assertEquals(Integer.valueOf(3), library.countItemsByTopic().get("Software Engineering"));
+
+        UniversityLibrary separate = new UniversityLibrary();
+        Item elsewhere = new Book("4", "Structure and Interpretation", "Harold Abelson", 657, "Computer Science", 1);
+        separate.addItem(elsewhere);
+        assertEquals(0, elsewhere.getAuthorCode());
+        assertEquals(0, elsewhere.getTopicCode());
+        assertTrue(library.getItemsByAuthor("Harold Abelson").isEmpty());
+        assertEquals(elsewhere, separate.getItemsByAuthor("Harold Abelson").get(0));
+
+        SymbolTable table = new SymbolTable();
+        assertEquals(0, table.intern("a"));
+        assertEquals(1, table.intern("b"));
+        assertEquals(0, table.intern(new String("a")));
+        assertEquals(-1, table.find("c"));
+        assertEquals("b", table.value(1));
+        assertEquals(2, table.size());
+    }
+
+    /**
+     * Test case to verify that topic and type facets keep their totals current through circulation.
+     */
+    @Test
+    public void testFacets() {
+        library.addItem(new Thesis("PhD", "ELTE", "3", "Type Systems", "Ada Lovelace", 210, "Computer Science", 2));
+        assertEquals(1, library.getItemsOfType("Thesis").size());
+        assertEquals(2, library.getItemsOfType("Book").size());
+        assertEquals(2, library.getItemsOnTopic("Software Engineering").size());
+
+        library.borrowItem("100", "1");
+        library.borrowItem("200", "2");
+        library.returnItem("200", "2", true);
+        library.borrowItem("200", "3");
+
+        List<FacetIndex.FacetCount> topics = library.getTopicFacets();
+        assertEquals("Computer Science", topics.get(0).getName());
+        FacetIndex.FacetCount software = topics.get(1);
+        assertEquals(2, software.getItems());
+        assertEquals(2, software.getBorrows());
+        assertEquals(book1.getCopiesCount() + book2.getCopiesCount(), software.getAvailableCopies());
+
+        library.getRepairSection().drain();
+        library.checkAndRepairDamagedItems();
+        long available = 0;
+        for (FacetIndex.FacetCount type : library.getTypeFacets()) {
+            available += type.getAvailableCopies();
+        }
+        long expected = 0;
+        for (Item item : library.getItems()) {
+            expected += item.getCopiesCount();
+        }
+        assertEquals(expected, available);
+        assertEquals(Integer.valueOf(1), library.countItemsByTopic().get("Computer Science"));
+    }
+
+    /**
+     * Test case to verify that title and author completions follow the borrow counts.
+     */
+    @Test
+    public void testAutocomplete() {
+        Book book3 = new Book("3", "Code Complete", "Steve McConnell", 960, "Software Engineering", 1);
+        library.addItem(book3);
+        assertEquals(Arrays.asList(book1, book3), library.completeTitle("co", 5));
+        assertEquals(Arrays.asList(book3), library.completeTitle("CODE  com", 5));
+        assertEquals(Arrays.asList(book1), library.completeTitle("clean ", 5));
+        assertTrue(library.completeTitle("codex", 5).isEmpty());
+
+        library.borrowItem("100", "3");
+        assertEquals(Arrays.asList(book3, book1), library.completeTitle("co", 5));
+        assertEquals(Arrays.asList(book3), library.completeTitle("co", 1));
+        assertEquals(Arrays.asList(book3), library.completeAuthor("mcc", 5));
+
+        book3.setBorrowCount(0);
+        assertEquals(Arrays.asList(book1, book3), library.completeTitle("co", 5));
+
+        Book last = null;
+        for (int i = 10; i < 22; i++) {
+            last = new Book("S" + i, "Series " + i, "Editor", 10, "Topic", 1);
+            library.addItem(last);
+        }
+        assertEquals("Series 19", library.completeTitle("series", 10).get(9).getTitle());
+        library.borrowItem("100", "S21");
+        assertEquals("Series 21", library.completeTitle("series", 10).get(0).getTitle());
+        assertEquals("Series 18", library.completeTitle("series", 10).get(9).getTitle());
+        last.setBorrowCount(0);
+        assertEquals("Series 10", library.completeTitle("series", 10).get(0).getTitle());
+        assertEquals("Series 19", library.completeTitle("series", 10).get(9).getTitle());
+    }
+
+    /**
+     * Test case to verify that fuzzy searches tolerate typos and rank results by edit distance.
+     */
+    @Test
+    public void testFuzzySearch() {
+        Book book3 = new Book("3", "The Pragmatic Programmer", "Andrew Hunt", 352, "Software Engineering", 1);
+        Book book4 = new Book("4", "Refactoring", "Martin Fowler", 448, "Software Engineering", 1);
+        library.addItem(book3);
+        library.addItem(book4);
+        assertTrue(library.searchByAuthor("Fowlr").isEmpty());
+        assertEquals(Arrays.asList(book4), library.fuzzySearchByAuthor("Fowlr", 5));
+        assertEquals(Arrays.asList(book3), library.fuzzySearchByTitle("Pragmatc", 5));
+        assertEquals(Arrays.asList(book1, book4), library.fuzzySearchByAuthor("martin", 5));
+        assertEquals(Arrays.asList(book1, book4), library.fuzzySearchByAuthor("martn", 5));
+        assertEquals(Arrays.asList(book1), library.fuzzySearchByAuthor("martin", 1));
+        assertTrue(library.fuzzySearchByTitle("Pattrens Design", 5).isEmpty());
+        assertEquals(1, library.fuzzySearchByTitle("cod", 5).size());
+    }
+
+    /**
+     * Test case to verify that paginated searches and listings return every result once across pages.
+     */
+    @Test
+    public void testPagination() {
+        for (int i = 3; i <= 12; i++) {
+            library.addItem(new Book(String.valueOf(i), "Volume " + i, "Author " + (i % 2), 100, "Mathematics", 1));
+        }
+        Page<Item> first = library.searchByTitle("volume", null, 4);
+        assertEquals(4, first.getEntries().size());
+        assertEquals("Volume 3", first.getEntries().get(0).getTitle());
+        assertTrue(first.hasNext());
+        Page<Item> second = library.searchByTitle("volume", first.getNextToken(), 4);
+        assertEquals("Volume 7", second.getEntries().get(0).getTitle());
+        Page<Item> third = library.searchByTitle("volume", second.getNextToken(), 4);
+        assertEquals(2, third.getEntries().size());
+        assertFalse(third.hasNext());
+
+        Page<Item> odd = library.searchByAuthor("author 1", null, 5);
+        assertEquals(5, odd.getEntries().size());
+        assertFalse(odd.hasNext());
+
+        int seen = 0;
+        String token = null;
+        do {
+            Page<Item> page = library.getItems(token, 5);
+            seen += page.getEntries().size();
+            token = page.getNextToken();
+        } while (token != null);
+        assertEquals(library.getItems().size(), seen);
+        Page<Member> members = library.getMembers(null, 1);
+        assertEquals(student, members.getEntries().get(0));
+        assertEquals(faculty, library.getMembers(members.getNextToken(), 1).getEntries().get(0));
+        assertFalse(library.getMembers(members.getNextToken(), 1).hasNext());
+        try {
+            library.getItems("not a token!", 5);
+            fail("Expected an invalid token to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test case to verify that replaying the journal rebuilds circulation state after a restart.
+     */
+    @Test
+    public void testJournalReplay() throws Exception {
+        File file = new File(folder.getRoot(), "circulation.journal");
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            assertEquals(0, library.attachJournal(journal));
+            library.borrowItem("100", "1");
+            library.borrowItem("200", "1");
+            library.borrowItem("200", "2");
+            library.returnItem("200", "2", true);
+        }
+
+        UniversityLibrary restarted = new UniversityLibrary();
+        Item restartedBook1 = new Book("1", "Clean Code", "Robert Martin", 464, "Software Engineering", 3);
+        Item restartedBook2 = new Book("2", "Design Patterns", "Erich Gamma", 395, "Software Engineering", 2);
+        restarted.addItem(restartedBook1);
+        restarted.addItem(restartedBook2);
+        restarted.registerMember(new Student("100", "Alice", "alice@uni.edu"));
+        restarted.registerMember(new Faculty("200", "Bob", "bob@uni.edu"));
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            assertEquals(5, restarted.attachJournal(journal));
+        }
+
+        assertEquals(book1.getCopiesCount(), restartedBook1.getCopiesCount());
+        assertEquals(book2.getCopiesCount(), restartedBook2.getCopiesCount());
+        assertEquals(2, restartedBook1.getBorrowCount());
+        assertEquals(4, restarted.getActiveTransactions().size());
+        assertEquals(1, restarted.getRepairSection().getRepairCount());
+        assertEquals(library.getRepairSection().getArchivedItems().size(),
+                restarted.getRepairSection().getArchivedItems().size());
+        assertEquals(1, restarted.getMembers().get(0).getCurrBorrowedItems().size());
+        for (Copy copy : book2.getCreatedCopies()) {
+            Copy replayed = restartedBook2.findCopy(copy.getNumber());
+            assertNotNull(replayed);
+            assertEquals(copy.getDamaged(), replayed.getDamaged());
+            assertEquals(copy.getDamageCount(), replayed.getDamageCount());
+        }
+    }
+
+    /**
+     * Test case to verify that a damaged return whose repair was not journaled is repaired after a restart,
+     * and that a repair record for an unknown copy is not applied.
+     */
+    @Test
+    public void testJournalRequeuesUndecidedRepairs() throws Exception {
+        File file = new File(folder.getRoot(), "repairs.journal");
+        library.getRepairSection().start(1, Executors.defaultThreadFactory(), 3_600_000);
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            library.attachJournal(journal);
+            library.borrowItem("100", "1");
+            library.returnItem("100", "1", true);
+            assertEquals(1, library.getRepairSection().getPendingCount());
+            assertEquals(2, journal.getRecordCount());
+        }
+        library.getRepairSection().setRepairListener(null);
+        library.getRepairSection().shutdown(1, TimeUnit.SECONDS);
+
+        UniversityLibrary restarted = new UniversityLibrary();
+        Item restartedBook1 = new Book("1", "Clean Code", "Robert Martin", 464, "Software Engineering", 3);
+        restarted.addItem(restartedBook1);
+        restarted.registerMember(new Student("100", "Alice", "alice@uni.edu"));
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            assertEquals(2, restarted.attachJournal(journal));
+            assertEquals(3, journal.getRecordCount());
+        }
+        assertEquals(1, restarted.getRepairSection().getRepairCount());
+        assertEquals(0, restarted.getRepairSection().getPendingCount());
+        Copy copy = restartedBook1.findCopy(1);
+        assertTrue(copy.getDamaged() == restarted.getRepairSection().getArchivedItems().contains(restartedBook1));
+        assertFalse(restarted.applyJournalRecord(TransactionJournal.REPAIR, 0, 0, "99", "1", false));
+        assertEquals(1, restarted.getRepairSection().getRepairCount());
+    }
+
+    /**
+     * Test case to verify that a borrow whose journal record cannot be written leaves the library unchanged.
+     */
+    @Test
+    public void testJournalWrittenAhead() throws Exception {
+        File file = new File(folder.getRoot(), "failing.journal");
+        TransactionJournal journal = new TransactionJournal(file.toPath());
+        library.attachJournal(journal);
+        journal.close();
+        try {
+            library.borrowItem("100", "1");
+            fail("Expected the closed journal to reject the borrow");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        assertEquals(3, book1.getCopiesCount());
+        assertEquals(0, book1.getBorrowCount());
+        assertTrue(student.getCurrBorrowedItems().isEmpty());
+        assertTrue(library.getActiveTransactions().isEmpty());
+    }
+
+    /**
+     * Test case to verify that a circulation batch reports an outcome per operation and journals only the
+     * operations that were applied.
+     */
+    @Test
+    public void testCirculationBatch() throws Exception {
+        File file = new File(folder.getRoot(), "batch.journal");
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            library.attachJournal(journal);
+            CirculationBatch batch = new CirculationBatch()
+                    .borrow("100", "1")
+                    .borrow("999", "1")
+                    .borrow("100", "999")
+                    .borrow("200", "2")
+                    .borrow("100", "2")
+                    .borrow("200", "2")
+                    .returnItem("100", "1", false);
+            byte[] results = library.applyBatch(batch);
+
+            assertArrayEquals(new byte[] {CirculationBatch.OK, CirculationBatch.UNKNOWN_MEMBER,
+                CirculationBatch.UNKNOWN_ITEM, CirculationBatch.OK, CirculationBatch.OK,
+                CirculationBatch.REJECTED, CirculationBatch.OK}, results);
+            assertEquals(4, journal.getRecordCount());
+        }
+
+        List<Transaction> transactions = library.getActiveTransactions();
+        assertEquals(4, transactions.size());
+        assertTrue(transactions.get(0).getId() < transactions.get(3).getId());
+        assertEquals("TX" + transactions.get(0).getId(), transactions.get(0).getTrascationId());
+        assertEquals(transactions.get(0).getDate(), transactions.get(3).getDate());
+        assertEquals(3, book1.getCopiesCount());
+        assertEquals(0, book2.getCopiesCount());
+    }
+
+    /**
+     * Tests that refused borrows and returns are neither journaled nor recorded as transactions.
+     */
+    @Test
+    public void testRefusedOperationsLeaveNoTransaction() throws Exception {
+        library.addItem(new Book("3", "Refactoring", "Martin Fowler", 448, "Software Engineering", 0));
+        File file = new File(folder.getRoot(), "refused.journal");
+        try (TransactionJournal journal = new TransactionJournal(file.toPath())) {
+            library.attachJournal(journal);
+            library.returnItem("100", "1", false);
+            assertFalse(library.borrowItem("100", "3"));
+            byte[] results = library.applyBatch(new CirculationBatch()
+                    .returnItem("200", "1", true)
+                    .borrow("200", "3"));
+
+            assertArrayEquals(new byte[] {CirculationBatch.REJECTED, CirculationBatch.REJECTED}, results);
+            assertEquals(0, journal.getRecordCount());
+        }
+        assertTrue(library.getTransactionsOfMember("100").isEmpty());
+        assertTrue(library.getTransactionsOfMember("200").isEmpty());
+        assertEquals(0, library.getRepairSection().getPendingCount());
+    }
+
+    /**
+     * Tests that a batch whose journal fails midway keeps the operations applied before the failure.
+     */
+    @Test
+    public void testCirculationBatchKeepsAppliedPrefixOnJournalFailure() throws Exception {
+        File file = new File(folder.getRoot(), "partial.journal");
+        try (TransactionJournal journal = new TransactionJournal(file.toPath()) {
+            @Override
+            long stage(byte type, long timestamp, long id, String memberId, String itemId, boolean flag) {
+                if ("200".equals(memberId)) {
+                    throw new UncheckedIOException(new IOException("Journal device full"));
+                }
+                return super.stage(type, timestamp, id, memberId, itemId, flag);
+            }
+        }) {
+            library.attachJournal(journal);
+            CirculationBatch batch = new CirculationBatch()
+                    .borrow("100", "1")
+                    .returnItem("100", "1", true)
+                    .borrow("200", "2");
+            try {
+                library.applyBatch(batch);
+                fail("Expected the failing journal to abort the batch");
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+            assertEquals(3, journal.getRecordCount());
+        }
+
+        assertEquals(2, library.getTransactionsOfMember("100").size());
+        assertTrue(library.getTransactionsOfMember("200").isEmpty());
+        assertEquals(1, library.getRepairSection().getRepairCount());
+        assertEquals(0, book2.getBorrowCount());
+    }
+
+    /**
+     * Test case to verify that a snapshot restores items, copies, members and repairs.
+     */
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        library.addItem(new Thesis("PhD", "ELTE", "3", "Type Systems", "Ada Lovelace", 210, "Computer Science", 1));
+        book2.createDigVersion();
+        book2.getDigitalVersion().viewDigital();
+        library.borrowItem("100", "1");
+        library.borrowItem("200", "2");
+        library.returnItem("200", "2", true);
+
+        File file = new File(folder.getRoot(), "library.snapshot");
+        LibrarySnapshot.write(library, file.toPath());
+        UniversityLibrary restored = LibrarySnapshot.load(file.toPath());
+
+        assertEquals(3, restored.getItems().size());
+        assertTrue(restored.getItems().get(2) instanceof Thesis);
+        Item restoredBook1 = restored.getItems().get(0);
+        assertEquals(book1.getCopiesCount(), restoredBook1.getCopiesCount());
+        assertEquals(book1.getCreatedCopies().size(), restoredBook1.getCreatedCopies().size());
+        assertEquals(book1.getCreatedCopies().get(0).getCopyId(), restoredBook1.getCreatedCopies().get(0).getCopyId());
+        assertEquals(((Book) book1).getIsbn(), ((Book) restoredBook1).getIsbn());
+        assertEquals(1, restored.getItems().get(1).getDigitalVersion().getViews());
+        assertEquals(restoredBook1, restored.getMembers().get(0).getCurrBorrowedItems().get(0));
+        assertEquals(1, restored.getMembers().get(1).getAllBorrowedItems().size());
+        assertEquals(1, restored.getRepairSection().getRepairCount());
+        assertEquals(3, restored.getActiveTransactions().size());
+        assertTrue(restored.borrowItem("100", "3"));
+    }
+
+    /**
+     * Test case to verify that the parallel loader keeps file order across chunks and supports all item types.
+     */
+    @Test
+    public void testParallelCatalogLoader() throws Exception {
+        File file = new File(folder.getRoot(), "items.txt");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < 6000; i++) {
+                if (i % 3 == 0) {
+                    out.println("B" + i + " Title_" + i + " Some_Author 100 Topic_" + (i % 7) + " Book 2");
+                } else if (i % 3 == 1) {
+                    out.println("T" + i + " Thesis_" + i + " Some_Author 80 Topic Thesis 1 PhD ELTE");
+                } else {
+                    out.println("P" + i + " Paper_" + i + " Some_Author 12 Topic ResearchPaper 1 10.1000/" + i + " ICSE");
+                }
+            }
+            out.println("B0 Duplicate Some_Author 1 Topic Book 1");
+            out.println("X1 Broken Some_Author pages Topic Book 1");
+        }
+
+        UniversityLibrary loaded = new UniversityLibrary();
+        assertEquals(6000, new CatalogLoader().loadItems(file.toPath(), loaded));
+        List<Item> all = loaded.getItems();
+        assertEquals("B0", all.get(0).getId());
+        assertEquals("P5999", all.get(5999).getId());
+        assertTrue(all.get(1) instanceof Thesis);
+        assertEquals("Title 3", all.get(3).getTitle());
+        assertEquals(2000, loaded.searchByTitle("thesis").size());
+    }
 }